@@ -0,0 +1,57 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import unomodding.canary.playtimelimiter.utils.AuditLog;
+
+/**
+ * Cost to the calling thread of writing a line to playtime.log, as done on every join, quit and kick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditLogBenchmark {
+    private File file;
+    private AuditLog log;
+
+    @Setup
+    public void setup() throws Exception {
+        file = File.createTempFile("playtime", ".log");
+        log = new AuditLog(file, 1024, 5000, 64);
+        log.open();
+    }
+
+    @TearDown
+    public void tearDown() {
+        log.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void log() {
+        log.log("RyanTheAlmighty logged in");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logContended() {
+        log.log("RyanTheAlmighty logged in");
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import unomodding.canary.playtimelimiter.utils.DailyAllowance;
+
+/**
+ * Cost of working out the time allowed, which is done for every player on every check, at various server ages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DailyAllowanceBenchmark {
+    @Param({ "0", "30", "365", "3650" })
+    public int serverAgeDays;
+
+    @Param({ "true", "false" })
+    public boolean timeTravels;
+
+    private DailyAllowance allowance;
+    private long now;
+
+    @Setup
+    public void setup() {
+        now = System.currentTimeMillis() / 1000;
+        allowance = new DailyAllowance(now - (long) serverAgeDays * DailyAllowance.SECONDS_PER_DAY, 28800, 3600,
+                timeTravels);
+    }
+
+    @Benchmark
+    public int sameDay() {
+        return allowance.getTimeAllowed(now);
+    }
+
+    @Benchmark
+    public int newDay() {
+        // Crossing into the next day each call misses the cached day
+        now += DailyAllowance.SECONDS_PER_DAY;
+        return allowance.getTimeAllowed(now);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import unomodding.canary.playtimelimiter.TestPlugin;
+import unomodding.canary.playtimelimiter.threads.PlayTimeCheckerTask;
+
+/**
+ * Cost of the checker's once a second run with a server full of players, {@code due} of whom have a deadline that
+ * has passed, and of rescheduling a player after their time changes. The due players turn out to have been given
+ * more time, so each is looked up on the stub server and queued again rather than warned or kicked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayTimeCheckerBenchmark {
+    @Param({ "100", "1000", "10000" })
+    public int players;
+
+    @Param({ "0", "10", "100" })
+    public int due;
+
+    private TestPlugin server;
+    private PlayTimeCheckerTask checker;
+    private UUID[] uuids;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new TestPlugin();
+        checker = new PlayTimeCheckerTask(server.getPlugin(), server.getPlugin().getStats());
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            server.join(uuids[i]);
+            server.getPlugin().loadPlayTime(uuids[i]);
+            checker.schedule(uuids[i], 3600 + i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void makeDue() {
+        for (int i = 0; i < Math.min(due, players); i++) {
+            checker.schedule(uuids[next++ % players], 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public void run() {
+        checker.run();
+    }
+
+    @Benchmark
+    public int reschedule() {
+        UUID uuid = uuids[next++ % players];
+        checker.schedule(uuid, 3600);
+        return checker.size();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import net.canarymod.api.OfflinePlayer;
+import net.canarymod.api.entity.living.humanoid.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import unomodding.canary.playtimelimiter.PlayTimeLimiter;
+import unomodding.canary.playtimelimiter.TestPlugin;
+
+/**
+ * Cost of a player joining and leaving while {@code online} others are on, going through the same plugin calls as
+ * onPlayerJoin and onPlayerQuit. The hooks those fire for other plugins need a running Canary so aren't included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayTimeJoinBenchmark {
+    @Param({ "100", "1000", "10000" })
+    public int online;
+
+    @Param({ "1000" })
+    public int returning;
+
+    private TestPlugin server;
+    private PlayTimeLimiter plugin;
+    private UUID[] uuids;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new TestPlugin();
+        plugin = server.getPlugin();
+        for (int i = 0; i < online; i++) {
+            UUID uuid = UUID.randomUUID();
+            plugin.setPlayerLoggedIn(server.offlinePlayer(uuid));
+            server.join(uuid);
+        }
+        uuids = new UUID[returning];
+        for (int i = 0; i < returning; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public boolean joinAndQuit() {
+        UUID uuid = uuids[next++ % returning];
+        Player player = server.join(uuid);
+        OfflinePlayer offline = server.offlinePlayer(uuid);
+
+        plugin.rememberPlayer(uuid, player.getName());
+        plugin.awaitPrefetch(uuid, Long.MAX_VALUE);
+        plugin.clearPrefetch(uuid);
+        plugin.loadPlayTime(player);
+        plugin.resolvePolicy(player);
+        boolean out = plugin.isOutOfPlayTime(uuid);
+        plugin.setPlayerLoggedIn(offline);
+
+        plugin.setPlayerLoggedOut(offline);
+        plugin.clearPrefetch(uuid);
+        server.leave(uuid);
+        return out;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import unomodding.canary.playtimelimiter.PlayTimeLimiter;
+import unomodding.canary.playtimelimiter.TestPlugin;
+
+/**
+ * Cost of the periodic savePlayTime with {@code changed} of the cached players changed since the last one. Only
+ * the caller's side is measured, the writer drains the queue to the in-memory store in the background.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayTimeSaveBenchmark {
+    @Param({ "10000" })
+    public int players;
+
+    @Param({ "10", "100", "1000" })
+    public int changed;
+
+    private TestPlugin server;
+    private PlayTimeLimiter plugin;
+    private UUID[] uuids;
+    private int next = 0;
+    private int pass = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new TestPlugin();
+        plugin = server.getPlugin();
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            plugin.setPlayTime(uuids[i], 0);
+        }
+        plugin.savePlayTime();
+    }
+
+    @Setup(Level.Invocation)
+    public void change() throws Exception {
+        pass++;
+        for (int i = 0; i < Math.min(changed, players); i++) {
+            plugin.setPlayTime(uuids[next++ % players], pass);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public void save() {
+        plugin.savePlayTime();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.benchmarks;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import unomodding.canary.playtimelimiter.data.FilePlayTimeStore;
+import unomodding.canary.playtimelimiter.data.MemoryPlayTimeStore;
+import unomodding.canary.playtimelimiter.data.PlayTimeRecord;
+import unomodding.canary.playtimelimiter.data.PlayTimeStore;
+import unomodding.canary.playtimelimiter.threads.PlayTimeWriter;
+
+/**
+ * Cost of a save: queueing every changed player with the writer and waiting for the store to take them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayTimeWriterBenchmark {
+    @Param({ "100", "1000", "10000" })
+    public int players;
+
+    @Param({ "memory", "file" })
+    public String storage;
+
+    private File folder;
+    private PlayTimeStore store;
+    private PlayTimeWriter writer;
+    private UUID[] uuids;
+    private int pass = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("file".equals(storage)) {
+            folder = File.createTempFile("playtime", "bench");
+            folder.delete();
+            folder.mkdirs();
+            store = new FilePlayTimeStore(folder, false, players * 10);
+        } else {
+            store = new MemoryPlayTimeStore();
+        }
+        store.open();
+        writer = new PlayTimeWriter(null, store, players);
+        writer.start();
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.shutdown(60000);
+        store.close();
+        if (folder != null) {
+            for (File file : folder.listFiles()) {
+                file.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    @Benchmark
+    public boolean save() {
+        pass++;
+        for (int i = 0; i < players; i++) {
+            writer.queue(new PlayTimeRecord(uuids[i], pass + i, false));
+        }
+        return writer.awaitIdle(60000);
+    }
+}
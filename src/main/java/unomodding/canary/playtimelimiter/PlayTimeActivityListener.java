@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter;
+
+import net.canarymod.hook.HookHandler;
+import net.canarymod.hook.player.BlockRightClickHook;
+import net.canarymod.hook.player.ChatHook;
+import net.canarymod.hook.player.PlayerArmSwingHook;
+import net.canarymod.hook.player.PlayerMoveHook;
+import net.canarymod.plugin.PluginListener;
+import net.canarymod.plugin.Priority;
+
+/**
+ * Records player activity for afkMode. Movement fires every tick for every moving player, so these only stamp the
+ * player's session and leave the rest to the idle sweep.
+ */
+public class PlayTimeActivityListener implements PluginListener {
+    private final PlayTimeLimiter plugin;
+
+    public PlayTimeActivityListener(PlayTimeLimiter instance) {
+        this.plugin = instance;
+    }
+
+    @HookHandler(priority = Priority.PASSIVE, ignoreCanceled = true)
+    public void onPlayerMove(PlayerMoveHook hook) {
+        this.plugin.markActive(hook.getPlayer());
+    }
+
+    @HookHandler(priority = Priority.PASSIVE, ignoreCanceled = true)
+    public void onChat(ChatHook hook) {
+        this.plugin.markActive(hook.getPlayer());
+    }
+
+    @HookHandler(priority = Priority.PASSIVE, ignoreCanceled = true)
+    public void onArmSwing(PlayerArmSwingHook hook) {
+        this.plugin.markActive(hook.getPlayer());
+    }
+
+    @HookHandler(priority = Priority.PASSIVE, ignoreCanceled = true)
+    public void onBlockRightClick(BlockRightClickHook hook) {
+        this.plugin.markActive(hook.getPlayer());
+    }
+}
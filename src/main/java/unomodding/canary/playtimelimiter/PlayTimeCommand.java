@@ -6,10 +6,17 @@
  */
 package unomodding.canary.playtimelimiter;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 import net.canarymod.Canary;
-import net.canarymod.api.OfflinePlayer;
+import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.chat.Colors;
 import net.canarymod.chat.MessageReceiver;
 import net.canarymod.chat.ReceiverType;
@@ -18,7 +25,11 @@ import net.canarymod.commandsys.Command;
 import net.canarymod.commandsys.CommandListener;
 import net.canarymod.commandsys.TabComplete;
 import net.canarymod.commandsys.TabCompleteHelper;
+import net.visualillusionsent.utils.TaskManager;
+import unomodding.canary.playtimelimiter.data.PlayTimeLeaderboard;
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
 import unomodding.canary.playtimelimiter.exceptions.UnknownPlayerException;
+import unomodding.canary.playtimelimiter.utils.PlayTimeStats;
 
 public class PlayTimeCommand implements CommandListener {
     private final PlayTimeLimiter plugin;
@@ -30,7 +41,7 @@ public class PlayTimeCommand implements CommandListener {
     @Command(aliases = { "playtime", "pt" },
              description = "playtime command",
              permissions = {},
-             toolTip = "/playtime <start|stop|add|set|remove|check> [parameters...]",
+             toolTip = "/playtime <start|stop|add|set|remove|check|top|rank|stats|reload> [parameters...]",
              version = 2)
     public void baseCommand(MessageReceiver caller, String[] args) {
         printUsage(caller);
@@ -79,13 +90,11 @@ public class PlayTimeCommand implements CommandListener {
                     caller.message(Colors.RED + "You don't have permission to check your playtime!");
                 } else {
                     if (caller.getReceiverType() == ReceiverType.PLAYER) {
-                        OfflinePlayer player = Canary.getServer().getOfflinePlayer(caller.getName());
+                        UUID player = ((Player) caller).getUUID();
                         plugin.loadPlayTime(player);
                         caller.message(Colors.GREEN + "You have played for "
                                 + plugin.secondsToDaysHoursSecondsString(plugin.getPlayerPlayTime(player))
-                                + " and have "
-                                + plugin.secondsToDaysHoursSecondsString(plugin.getTimeAllowedInSeconds(player))
-                                + " remaining!");
+                                + " and have " + timeLeftString(player) + "!");
                     } else {
                         caller.message(Colors.RED + "Only Players have playtime!");
                     }
@@ -94,11 +103,15 @@ public class PlayTimeCommand implements CommandListener {
                 if (!caller.hasPermission("playtimelimiter.playtime.check.others")) {
                     caller.message(Colors.RED + "You don't have permission to check other players playtime!");
                 } else {
-                    OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
-                    caller.message(Colors.GREEN + player.getName() + " has played for "
+                    UUID player = plugin.getPlayerUUID(args[0]);
+                    if (player == null) {
+                        caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+                        return;
+                    }
+                    plugin.loadPlayTime(player);
+                    caller.message(Colors.GREEN + plugin.getPlayerName(player) + " has played for "
                             + plugin.secondsToDaysHoursSecondsString(plugin.getPlayerPlayTime(player)) + " and has "
-                            + plugin.secondsToDaysHoursSecondsString(plugin.getTimeAllowedInSeconds(player))
-                            + " remaining!");
+                            + timeLeftString(player) + "!");
                 }
             }
         }
@@ -113,9 +126,15 @@ public class PlayTimeCommand implements CommandListener {
     public void addCommand(MessageReceiver caller, String[] args) {
         if (!plugin.hasStarted()) {
             caller.message(Colors.RED + "Playtime hasn't started yet!");
+        } else if (isBulkTarget(args[0])) {
+            bulkCommand(caller, args, 1, "Added %d seconds of playtime to");
         } else {
             try {
-                OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
+                UUID player = plugin.getPlayerUUID(args[0]);
+                if (player == null) {
+                    caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+                    return;
+                }
                 plugin.loadPlayTime(player);
                 plugin.addPlayTime(player, Integer.parseInt(args[1]));
                 caller.message(Colors.GREEN + "Added " + Integer.parseInt(args[1]) + " seconds of playtime from "
@@ -139,9 +158,15 @@ public class PlayTimeCommand implements CommandListener {
     public void removeCommand(MessageReceiver caller, String[] args) {
         if (!plugin.hasStarted()) {
             caller.message(Colors.RED + "Playtime hasn't started yet!");
+        } else if (isBulkTarget(args[0])) {
+            bulkCommand(caller, args, -1, "Removed %d seconds of playtime from");
         } else {
             try {
-                OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
+                UUID player = plugin.getPlayerUUID(args[0]);
+                if (player == null) {
+                    caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+                    return;
+                }
                 plugin.loadPlayTime(player);
                 plugin.removePlayTime(player, Integer.parseInt(args[1]));
                 caller.message(Colors.GREEN + "Removed " + Integer.parseInt(args[1]) + " seconds of playtime from "
@@ -149,6 +174,8 @@ public class PlayTimeCommand implements CommandListener {
             } catch (NumberFormatException e) {
                 e.printStackTrace();
                 caller.message(Colors.RED + "Invalid number of seconds given!");
+            } catch (PlayTimeStoreException e) {
+                caller.message(Colors.RED + e.getMessage() + ", nothing was changed!");
             }
         }
     }
@@ -162,19 +189,137 @@ public class PlayTimeCommand implements CommandListener {
     public void setCommand(MessageReceiver caller, String[] args) {
         if (!plugin.hasStarted()) {
             caller.message(Colors.RED + "Playtime hasn't started yet!");
+        } else if (isBulkTarget(args[0])) {
+            bulkCommand(caller, args, 0, "Set playtime to %d seconds for");
         } else {
             try {
-                OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
+                UUID player = plugin.getPlayerUUID(args[0]);
+                if (player == null) {
+                    caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+                    return;
+                }
                 plugin.loadPlayTime(player);
                 plugin.setPlayTime(player, Integer.parseInt(args[1]));
                 caller.message(Colors.GREEN + "Set " + args[0] + "'s playtime to " + Integer.parseInt(args[1]));
             } catch (NumberFormatException e) {
                 e.printStackTrace();
                 caller.message(Colors.RED + "Invalid number of seconds given!");
+            } catch (PlayTimeStoreException e) {
+                caller.message(Colors.RED + e.getMessage() + ", nothing was changed!");
             }
         }
     }
 
+    @Command(aliases = { "top" },
+             parent = "playtime",
+             description = "top subcommand",
+             permissions = { "playtimelimiter.playtime.top" },
+             toolTip = "/playtime top [count]",
+             version = 2)
+    public void topCommand(MessageReceiver caller, String[] args) {
+        int count = 10;
+        if (args.length == 1) {
+            try {
+                count = Math.max(1, Math.min(100, Integer.parseInt(args[0])));
+            } catch (NumberFormatException e) {
+                caller.message(Colors.RED + "Invalid number of players given!");
+                return;
+            }
+        }
+        List<PlayTimeLeaderboard.Entry> top = plugin.getTopPlayers(count);
+        caller.message(Colors.YELLOW + "Top " + top.size() + " of " + plugin.getLeaderboardSize()
+                + " players by playtime:");
+        for (int i = 0; i < top.size(); i++) {
+            PlayTimeLeaderboard.Entry entry = top.get(i);
+            caller.message(Colors.CYAN + (i + 1) + ". " + plugin.getPlayerName(entry.uuid) + TextFormat.RESET + " - "
+                    + plugin.secondsToDaysHoursSecondsString(entry.playtime));
+        }
+    }
+
+    @Command(aliases = { "rank" },
+             parent = "playtime",
+             description = "rank subcommand",
+             permissions = { "playtimelimiter.playtime.rank" },
+             toolTip = "/playtime rank [player]",
+             version = 2)
+    public void rankCommand(MessageReceiver caller, String[] args) {
+        UUID player;
+        if (args.length == 0) {
+            if (caller.getReceiverType() != ReceiverType.PLAYER) {
+                caller.message(Colors.RED + "Only Players have playtime!");
+                return;
+            }
+            player = ((Player) caller).getUUID();
+        } else {
+            player = plugin.getPlayerUUID(args[0]);
+        }
+        if (player == null) {
+            caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+            return;
+        }
+        plugin.loadPlayTime(player);
+        int rank = plugin.getRank(player);
+        if (rank == 0) {
+            caller.message(Colors.RED + plugin.getPlayerName(player) + " hasn't played yet!");
+        } else {
+            caller.message(Colors.GREEN + plugin.getPlayerName(player) + " is ranked " + rank + " of "
+                    + plugin.getLeaderboardSize() + " with "
+                    + plugin.secondsToDaysHoursSecondsString(plugin.getPlayerPlayTime(player)) + " played.");
+        }
+    }
+
+    @Command(aliases = { "stats" },
+             parent = "playtime",
+             description = "stats subcommand",
+             permissions = { "playtimelimiter.playtime.stats" },
+             toolTip = "/playtime stats [reset]",
+             version = 2)
+    public void statsCommand(MessageReceiver caller, String[] args) {
+        PlayTimeStats stats = plugin.getStats();
+        if (args.length == 1 && args[0].equalsIgnoreCase("reset")) {
+            stats.reset();
+            caller.message(Colors.GREEN + "Playtime stats reset.");
+            return;
+        }
+        caller.message(Colors.YELLOW + "PlayTimeLimiter stats (times in microseconds):");
+        caller.message(Colors.CYAN + "Sessions: " + TextFormat.RESET + stats.getActiveSessions() + " online, "
+                + stats.getCachedSessions() + " in memory, " + stats.getDirtySessions() + " unsaved, "
+                + stats.getEvictions() + " evicted");
+        caller.message(Colors.CYAN + "Queues: " + TextFormat.RESET + stats.getWriteQueueSize() + " writes, "
+                + stats.getLogQueueSize() + " log lines");
+        caller.message(Colors.CYAN + "Checker: " + TextFormat.RESET + stats.getCheckerRuns() + " runs, mean "
+                + stats.getCheckerMeanMicros() + ", p99 " + stats.getCheckerP99Micros() + ", max "
+                + stats.getCheckerMaxMicros());
+        caller.message(Colors.CYAN + "Saves: " + TextFormat.RESET + stats.getSaveRuns() + " runs, mean "
+                + stats.getSaveMeanMicros() + ", p99 " + stats.getSaveP99Micros() + ", max "
+                + stats.getSaveMaxMicros());
+        caller.message(Colors.CYAN + "Reads: " + TextFormat.RESET + stats.getStoreReads() + ", mean "
+                + stats.getStoreReadMeanMicros() + ", p99 " + stats.getStoreReadP99Micros() + ", "
+                + stats.getStoreReadErrors() + " failed");
+        caller.message(Colors.CYAN + "Writes: " + TextFormat.RESET + stats.getStoreWrites() + ", mean "
+                + stats.getStoreWriteMeanMicros() + ", p99 " + stats.getStoreWriteP99Micros() + ", "
+                + stats.getStoreWriteErrors() + " failed");
+        caller.message(Colors.CYAN + "Cache: " + TextFormat.RESET + stats.getCacheHits() + " hits, "
+                + stats.getCacheMisses() + " misses ("
+                + String.format("%.1f", stats.getCacheHitRate() * 100) + "%)");
+        caller.message(Colors.CYAN + "Names: " + TextFormat.RESET + stats.getNameCacheSize() + " cached, "
+                + stats.getNameCacheHits() + " hits, " + stats.getNameCacheMisses() + " misses");
+    }
+
+    @Command(aliases = { "reload" },
+             parent = "playtime",
+             description = "reload subcommand",
+             permissions = { "playtimelimiter.playtime.reload" },
+             toolTip = "/playtime reload",
+             version = 2)
+    public void reloadCommand(MessageReceiver caller, String[] args) {
+        List<String> restart = plugin.reload();
+        caller.message(Colors.GREEN + "PlayTimeLimiter config reloaded.");
+        if (!restart.isEmpty()) {
+            caller.message(Colors.YELLOW + "Changes to " + restart + " will take effect after a restart.");
+        }
+    }
+
     @Command(aliases = { "blacklist" },
              parent = "playtime",
              description = "blacklist subcommand",
@@ -192,10 +337,16 @@ public class PlayTimeCommand implements CommandListener {
              toolTip = "/playtime blacklist add <player>",
              version = 2)
     public void blacklistAddCommand(MessageReceiver caller, String[] args) {
-        OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
-        if (!plugin.hasPlayTime(player)) {
-            plugin.addToPlayTimeBlacklist(player, true);
-            caller.message("Added " + args[0] + " to the playtime blacklist.");
+        UUID player = plugin.getPlayerUUID(args[0]);
+        if (player == null) {
+            caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+        } else if (!plugin.hasPlayTime(player)) {
+            try {
+                plugin.addToPlayTimeBlacklist(player, true);
+                caller.message("Added " + args[0] + " to the playtime blacklist.");
+            } catch (PlayTimeStoreException e) {
+                caller.message(Colors.RED + e.getMessage() + ", nothing was changed!");
+            }
         } else {
             caller.message(args[0] + " is already on the playtime blacklist.");
         }
@@ -208,10 +359,16 @@ public class PlayTimeCommand implements CommandListener {
              toolTip = "/playtime blacklist remove <player>",
              version = 2)
     public void blacklistRemoveCommand(MessageReceiver caller, String[] args) {
-        OfflinePlayer player = Canary.getServer().getOfflinePlayer(args[0]);
-        if (plugin.hasPlayTime(player)) {
-            plugin.addToPlayTimeBlacklist(player, false);
-            caller.message("Removed " + args[0] + " from the playtime blacklist.");
+        UUID player = plugin.getPlayerUUID(args[0]);
+        if (player == null) {
+            caller.message(Colors.RED + "Unknown player " + args[0] + "!");
+        } else if (plugin.hasPlayTime(player)) {
+            try {
+                plugin.addToPlayTimeBlacklist(player, false);
+                caller.message("Removed " + args[0] + " from the playtime blacklist.");
+            } catch (PlayTimeStoreException e) {
+                caller.message(Colors.RED + e.getMessage() + ", nothing was changed!");
+            }
         } else {
             caller.message(args[0] + " wasn't part of the playtime blacklist.");
         }
@@ -221,11 +378,13 @@ public class PlayTimeCommand implements CommandListener {
     public List<String> playtimeTabComplete(MessageReceiver caller, String[] parameters) {
         if (parameters.length == 1) {
             return TabCompleteHelper.matchTo(parameters, new String[] { "start", "stop", "add", "remove", "set",
-                    "check", "blacklist" });
+                    "check", "blacklist", "top", "rank", "stats", "reload" });
         } else if (parameters.length == 2
                 && (parameters[1].equals("add") || parameters[1].equals("remove") || parameters[1].equals("check")
-                    || parameters[1].equals("set"))) {
+                    || parameters[1].equals("set") || parameters[1].equals("rank"))) {
             return TabCompleteHelper.matchTo(parameters, Canary.getServer().getKnownPlayerNames());
+        } else if (parameters.length == 2 && parameters[1].equals("stats")) {
+            return TabCompleteHelper.matchTo(parameters, new String[] { "reset" });
         } else if(parameters.length == 2 && parameters[1].equals("blacklist")) {
             return TabCompleteHelper.matchTo(parameters, new String[] { "add", "remove" });
         } else if(parameters.length == 3 && parameters[1].equals("blacklist") && (parameters[2].equals("add") || parameters[2].equals("remove"))) {
@@ -235,6 +394,123 @@ public class PlayTimeCommand implements CommandListener {
         }
     }
 
+    private boolean isBulkTarget(String target) {
+        return target.startsWith("@");
+    }
+
+    /**
+     * Runs add (sign 1), remove (sign -1) or set (sign 0) against a bulk target in the background, so resolving
+     * names and reading players doesn't hold up the server thread.
+     */
+    private void bulkCommand(final MessageReceiver caller, final String[] args, final int sign,
+            final String done) {
+        if (args.length < 2) {
+            printUsage(caller);
+            return;
+        }
+        final int seconds;
+        try {
+            seconds = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            caller.message(Colors.RED + "Invalid number of seconds given!");
+            return;
+        }
+        TaskManager.executeTask(new Runnable() {
+            public void run() {
+                long start = System.currentTimeMillis();
+                Set<UUID> targets = resolveTargets(caller, args[0]);
+                if (targets == null) {
+                    return;
+                }
+                long resolved = System.currentTimeMillis();
+                int changed;
+                if (sign == 0) {
+                    changed = plugin.setPlayTime(targets, seconds);
+                } else {
+                    changed = plugin.addPlayTime(targets, sign * seconds);
+                }
+                long finished = System.currentTimeMillis();
+                caller.message(Colors.GREEN + String.format(done, seconds) + " " + changed + " player/s in "
+                        + (finished - start) + "ms (" + (resolved - start) + "ms finding players)");
+                plugin.audit(caller.getName() + " ran /playtime " + (sign == 0 ? "set" : sign > 0
+                        ? "add" : "remove") + " " + args[0] + " " + seconds + " on " + changed + " player/s");
+            }
+        });
+    }
+
+    /**
+     * Turns a bulk target into the players it covers. Targets are @online, @group:&lt;name&gt; for online members
+     * of a group, or @file:&lt;name&gt; for a file in the plugin's folder with a player name or UUID on each line.
+     */
+    private Set<UUID> resolveTargets(MessageReceiver caller, String target) {
+        Set<UUID> targets = new LinkedHashSet<UUID>();
+        if (target.equalsIgnoreCase("@online")) {
+            for (Player player : Canary.getServer().getPlayerList()) {
+                targets.add(player.getUUID());
+            }
+        } else if (target.toLowerCase().startsWith("@group:")) {
+            String group = target.substring("@group:".length());
+            for (Player player : Canary.getServer().getPlayerList()) {
+                if (player.isInGroup(group, true)) {
+                    targets.add(player.getUUID());
+                }
+            }
+        } else if (target.toLowerCase().startsWith("@file:")) {
+            String name = target.substring("@file:".length());
+            if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.contains("..")) {
+                caller.message(Colors.RED + "The file must be in the PlayTimeLimiter folder!");
+                return null;
+            }
+            File file = new File(plugin.getDataFolder(), name);
+            BufferedReader reader = null;
+            int unknown = 0;
+            try {
+                reader = new BufferedReader(new FileReader(file));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    UUID uuid = plugin.getPlayerUUID(line);
+                    if (uuid == null) {
+                        unknown++;
+                    } else {
+                        targets.add(uuid);
+                    }
+                }
+            } catch (IOException e) {
+                caller.message(Colors.RED + "Couldn't read " + name + "!");
+                return null;
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            if (unknown > 0) {
+                caller.message(Colors.RED + "Skipped " + unknown + " unknown player/s in " + name);
+            }
+        } else {
+            caller.message(Colors.RED + "Unknown target " + target + ", use @online, @group:<name> or @file:<name>");
+            return null;
+        }
+        return targets;
+    }
+
+    private String timeLeftString(UUID player) {
+        int timeLeft = plugin.getTimeAllowedInSeconds(player);
+        String policy = plugin.getPolicyName(player);
+        String quota = policy.equals("default") ? "" : " on the " + policy + " quota";
+        if (timeLeft == Integer.MAX_VALUE) {
+            return "no limit" + quota;
+        }
+        return plugin.secondsToDaysHoursSecondsString(timeLeft) + " remaining" + quota;
+    }
+
     public void printUsage(MessageReceiver caller) {
         caller.message(Colors.YELLOW + "/playtime usage:");
         if (caller.hasPermission("playtimelimiter.playtime.start")) {
@@ -262,5 +538,27 @@ public class PlayTimeCommand implements CommandListener {
             caller.message(Colors.CYAN + "/playtime remove <user> <time>" + TextFormat.RESET
                     + " - Remove time in seconds from the user's playtime.");
         }
+        if (caller.hasPermission("playtimelimiter.playtime.add")
+                || caller.hasPermission("playtimelimiter.playtime.remove")
+                || caller.hasPermission("playtimelimiter.playtime.set")) {
+            caller.message(Colors.CYAN + "<user>" + TextFormat.RESET
+                    + " can also be @online, @group:<name> or @file:<name> to change many users at once.");
+        }
+        if (caller.hasPermission("playtimelimiter.playtime.top")) {
+            caller.message(Colors.CYAN + "/playtime top [count]" + TextFormat.RESET
+                    + " - List the players who have played the most.");
+        }
+        if (caller.hasPermission("playtimelimiter.playtime.rank")) {
+            caller.message(Colors.CYAN + "/playtime rank [user]" + TextFormat.RESET
+                    + " - Show where a given user, or if blank, yourself, is on the leaderboard.");
+        }
+        if (caller.hasPermission("playtimelimiter.playtime.stats")) {
+            caller.message(Colors.CYAN + "/playtime stats [reset]" + TextFormat.RESET
+                    + " - Show how much time the plugin is spending and on what.");
+        }
+        if (caller.hasPermission("playtimelimiter.playtime.reload")) {
+            caller.message(Colors.CYAN + "/playtime reload" + TextFormat.RESET
+                    + " - Reload the config without restarting.");
+        }
     }
 }
\ No newline at end of file
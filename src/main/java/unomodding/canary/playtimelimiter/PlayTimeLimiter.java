@@ -7,102 +7,178 @@
 package unomodding.canary.playtimelimiter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import net.canarymod.Canary;
 import net.canarymod.api.OfflinePlayer;
+import net.canarymod.api.Server;
 import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.chat.Colors;
 import net.canarymod.commandsys.CommandDependencyException;
-import net.canarymod.database.Database;
-import net.canarymod.database.exceptions.DatabaseReadException;
-import net.canarymod.database.exceptions.DatabaseWriteException;
 import net.canarymod.plugin.Plugin;
 
 import net.visualillusionsent.utils.TaskManager;
 import org.mcstats.Metrics;
 
-import unomodding.canary.playtimelimiter.data.PlayTimeBlacklistAccess;
-import unomodding.canary.playtimelimiter.data.PlayTimeDataAccess;
+import unomodding.canary.playtimelimiter.api.PlayTimeAPI;
+import unomodding.canary.playtimelimiter.api.PlayTimeQuotaChangeHook;
+import unomodding.canary.playtimelimiter.api.PlayTimeSessionStartHook;
+import unomodding.canary.playtimelimiter.api.PlayTimeSnapshot;
+import unomodding.canary.playtimelimiter.data.CanaryPlayTimeStore;
+import unomodding.canary.playtimelimiter.data.FilePlayTimeStore;
+import unomodding.canary.playtimelimiter.data.InstrumentedPlayTimeStore;
+import unomodding.canary.playtimelimiter.data.MemoryPlayTimeStore;
+import unomodding.canary.playtimelimiter.data.PlayTimeJournal;
+import unomodding.canary.playtimelimiter.data.PlayTimeLeaderboard;
+import unomodding.canary.playtimelimiter.data.PlayTimeRecord;
+import unomodding.canary.playtimelimiter.data.PlayTimeStore;
+import unomodding.canary.playtimelimiter.data.PlayerSession;
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
 import unomodding.canary.playtimelimiter.exceptions.UnknownPlayerException;
+import unomodding.canary.playtimelimiter.threads.PlayTimeActivityTask;
 import unomodding.canary.playtimelimiter.threads.PlayTimeCheckerTask;
+import unomodding.canary.playtimelimiter.threads.PlayTimeJournalTask;
 import unomodding.canary.playtimelimiter.threads.PlayTimeSaverTask;
+import unomodding.canary.playtimelimiter.threads.PlayTimeWriter;
+import unomodding.canary.playtimelimiter.utils.AuditLog;
+import unomodding.canary.playtimelimiter.utils.PlayTimeConfig;
+import unomodding.canary.playtimelimiter.utils.PlayTimeSchedule;
+import unomodding.canary.playtimelimiter.utils.PlayTimeStats;
+import unomodding.canary.playtimelimiter.utils.PlayerNameCache;
+import unomodding.canary.playtimelimiter.utils.QuotaPolicy;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 public final class PlayTimeLimiter extends Plugin {
-    private Map<String, Integer> timePlayed = new HashMap<String, Integer>();
-    private Map<String, Integer> timeLoggedIn = new HashMap<String, Integer>();
-    private Map<String, Boolean> seenWarningMessages = new HashMap<String, Boolean>();
-    private Map<String, Boolean> blacklist = new HashMap<String, Boolean>();
-
-    private boolean started = false;
-    private final Gson GSON = new Gson();
+    // Sessions are shared between the hook handlers and the TaskManager tasks, see getSession
+    private final ConcurrentMap<UUID, PlayerSession> sessions = new ConcurrentHashMap<UUID, PlayerSession>();
+    private final Set<UUID> dirty = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+    private final ConcurrentMap<UUID, FutureTask<Void>> prefetches = new ConcurrentHashMap<UUID, FutureTask<Void>>();
+    private final Object flushLock = new Object();
+
+    private volatile boolean started = false;
+    private volatile Server server;
     private PlayTimeSaverTask playTimeSaverTask;
     private PlayTimeCheckerTask playTimeCheckerTask;
+    private PlayTimeJournalTask playTimeJournalTask;
+    private PlayTimeActivityTask playTimeActivityTask;
+    private volatile PlayTimeStore store;
+    private volatile PlayTimeWriter playTimeWriter;
+    private volatile PlayTimeJournal journal;
+    private volatile AuditLog auditLog;
+    private volatile PlayTimeConfig settings;
+    private final PlayTimeStats stats = new PlayTimeStats(this);
+    private final PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+    private final PlayTimeQueries queries = new PlayTimeQueries(this);
+    private volatile PlayerNameCache nameCache = new PlayerNameCache(1);
 
     @Override
     public void disable() {
-        // Save the playtime to database on plugin disable
-        this.savePlayTime();
-        this.saveBlacklist();
+        // Save the playtime to database on plugin disable. Usually the shutdown hook has already done this.
+        this.saveOnShutdown();
+
+        // Write out everything still queued before letting go of the writer, but don't hold up the server forever
+        if (playTimeWriter != null) {
+            long start = System.currentTimeMillis();
+            int queued = playTimeWriter.size();
+            int left = playTimeWriter.shutdown(settings.shutdownFlushSeconds * 1000L);
+            long took = System.currentTimeMillis() - start;
+            if (left == 0) {
+                getLogman().info("Wrote " + queued + " queued player/s in " + took + "ms");
+            } else {
+                getLogman().warn("Gave up after " + took + "ms with " + left + " player/s unwritten"
+                        + (journal != null ? ", they're kept in the journal" : ", their changes are lost"));
+            }
+            playTimeWriter = null;
+        }
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (auditLog != null) {
+            auditLog.close();
+            auditLog = null;
+        }
+        unregisterStats();
+
+        try {
+            nameCache.save(new File(getDataFolder(), "names.txt"));
+        } catch (IOException e) {
+            getLogman().warn("Failed to save names.txt", e);
+        }
 
         // Remove the tasks from TaskManager
         TaskManager.removeTask(playTimeSaverTask);
         TaskManager.removeTask(playTimeCheckerTask);
+        if (playTimeJournalTask != null) {
+            TaskManager.removeTask(playTimeJournalTask);
+        }
+        if (playTimeActivityTask != null) {
+            TaskManager.removeTask(playTimeActivityTask);
+        }
         playTimeSaverTask = null;
         playTimeCheckerTask = null;
+        playTimeJournalTask = null;
+        playTimeActivityTask = null;
     }
 
     @Override
     public boolean enable() {
-        if (!getConfig().containsKey("timeStarted")) {
-            getConfig().setInt("timeStarted", (int) (System.currentTimeMillis() / 1000));
-        }
-        this.started = true;
+        // Read the config once, everything else uses this snapshot until it's reloaded
+        this.settings = PlayTimeConfig.load(getConfig(), getLogman());
+        open(Canary.getServer(), settings, createStore(settings.storage));
 
-        if (!getConfig().containsKey("initialTime")) {
-            getConfig().setInt("initialTime", 28800);
-            getConfig().save();
-        }
-        if (!getConfig().containsKey("timePerDay")) {
-            getConfig().setInt("timePerDay", 3600);
-            getConfig().save();
-        }
-        if (!getConfig().containsKey("secondsBetweenPlayTimeChecks")) {
-            getConfig().setInt("secondsBetweenPlayTimeChecks", 10);
-            getConfig().save();
-        }
-        if (!getConfig().containsKey("secondsBetweenPlayTimeSaving")) {
-            getConfig().setInt("secondsBetweenPlayTimeSaving", 900);
-            getConfig().save();
-        }
-        if (!getConfig().containsKey("timeTravels")) {
-            getConfig().setBoolean("timeTravels", true);
-            getConfig().save();
-        }
-        /*if (!getConfig().containsKey("timeCap")) {
-            getConfig().setBoolean("timeCap", true);
-            getConfig().save();
+        nameCache = new PlayerNameCache(settings.nameCacheSize);
+        try {
+            nameCache.load(new File(getDataFolder(), "names.txt"));
+        } catch (IOException e) {
+            getLogman().warn("Failed to load names.txt", e);
         }
-        if (!getConfig().containsKey("timeCapValue")) {
-            getConfig().setInt("timeCapValue", 18000);
-            getConfig().save();
-        }*/
-        if (!getConfig().containsKey("blacklist")) {
-            getConfig().setBoolean("blacklist", false);
-            getConfig().save();
+
+        auditLog = new AuditLog(new File(getDataFolder(), "playtime.log"), settings.logBufferSize,
+                settings.secondsBetweenLogFlushes * 1000L, settings.logFlushSize);
+        try {
+            auditLog.open();
+        } catch (IOException e) {
+            getLogman().warn("Failed to open playtime.log", e);
         }
 
         getLogman().info(
-                String.format("Server started at %s which was %s seconds ago!", getConfig().getInt("timeStarted"), this
-                        .secondsToDaysHoursSecondsString((int) ((System.currentTimeMillis() / 1000) - getConfig()
-                                .getInt("timeStarted")))));
+                String.format("Server started at %s which was %s seconds ago!", settings.timeStarted, this
+                        .secondsToDaysHoursSecondsString((int) ((System.currentTimeMillis() / 1000)
+                                - settings.timeStarted))));
 
         // Enable Commands
         try {
@@ -113,22 +189,62 @@ public final class PlayTimeLimiter extends Plugin {
 
         playTimeSaverTask = new PlayTimeSaverTask(this);
 
-        TaskManager.scheduleContinuedTaskInSeconds(playTimeSaverTask, 30000,
-                getConfig().getInt("secondsBetweenPlayTimeSaving"));
-        TaskManager.scheduleContinuedTaskInSeconds(playTimeCheckerTask, 30000,
-                getConfig().getInt("secondsBetweenPlayTimeChecks"));
+        TaskManager.scheduleContinuedTaskInSeconds(playTimeSaverTask, 30,
+                settings.secondsBetweenPlayTimeSaving);
+        // Only players whose deadline has passed are looked at, so this can run every second
+        TaskManager.scheduleContinuedTaskInSeconds(playTimeCheckerTask, 1, 1);
 
         // Load any players that may be on at plugin enable
-        for (Player player : Canary.getServer().getPlayerList()) {
+        for (Player player : this.server.getPlayerList()) {
+            resolvePolicy(player);
             loadPlayTime(player);
         }
 
-        // Load old data
-        loadOldPlayTime();
+        // Warm the cache with everyone else in the background so joins don't have to hit the database. Either
+        // way everyone ends up on the leaderboard.
+        if (settings.preloadPlayTime) {
+            TaskManager.executeTask(new Runnable() {
+                public void run() {
+                    preloadPlayTime();
+                }
+            });
+        } else {
+            TaskManager.executeTask(new Runnable() {
+                public void run() {
+                    seedLeaderboard();
+                }
+            });
+        }
+
+        // Bring back anything the database missed before the last crash
+        if (settings.journal) {
+            openJournal();
+            playTimeJournalTask = new PlayTimeJournalTask(this);
+            TaskManager.scheduleContinuedTaskInSeconds(playTimeJournalTask,
+                    settings.secondsBetweenJournalCheckpoints,
+                    settings.secondsBetweenJournalCheckpoints);
+        }
+
+        // Import old data in the background, a big file shouldn't hold up startup
+        TaskManager.executeTask(new Runnable() {
+            public void run() {
+                loadOldPlayTime();
+            }
+        });
 
         // Enable Listener
         Canary.hooks().registerListener(new PlayTimeListener(this), this);
 
+        // Only count time while players are doing something
+        if (settings.afkMode) {
+            Canary.hooks().registerListener(new PlayTimeActivityListener(this), this);
+            playTimeActivityTask = new PlayTimeActivityTask(this);
+            TaskManager.scheduleContinuedTaskInSeconds(playTimeActivityTask,
+                    settings.secondsBetweenAfkSweeps, settings.secondsBetweenAfkSweeps);
+        }
+
+        registerStats();
+
         // Metrics
         try {
             Metrics metrics = new Metrics(this);
@@ -139,15 +255,56 @@ public final class PlayTimeLimiter extends Plugin {
         return true;
     }
 
-    public int secondsUntilNextDay() {
-        int timeStarted = getConfig().getInt("timeStarted");
-        int secondsSince = (int) ((System.currentTimeMillis() / 1000) - timeStarted);
+    /**
+     * Opens the store and write queue and sets up the checker, without registering anything with Canary. Split out
+     * of enable so the tests and benchmarks can run the plugin against a stub server.
+     */
+    void open(Server server, PlayTimeConfig settings, PlayTimeStore store) {
+        this.server = server;
+        this.settings = settings;
+        this.started = true;
 
-        while (secondsSince >= 86400) {
-            secondsSince -= 86400;
+        this.store = new InstrumentedPlayTimeStore(store, stats);
+        try {
+            this.store.open();
+        } catch (PlayTimeStoreException e) {
+            getLogman().warn("Failed to open playtime storage", e);
         }
 
-        return secondsSince;
+        playTimeWriter = new PlayTimeWriter(getLogman(), this.store, settings.writeQueueCapacity);
+        playTimeWriter.start();
+
+        playTimeCheckerTask = new PlayTimeCheckerTask(this, stats);
+    }
+
+    /**
+     * Gets an online player, or null if they aren't on.
+     */
+    public Player getOnlinePlayer(UUID uuid) {
+        return this.server.getPlayerFromUUID(uuid.toString());
+    }
+
+    /**
+     * Gets how long until the next day's time is given out and play is allowed again.
+     */
+    public int secondsUntilNextDay() {
+        long now = System.currentTimeMillis() / 1000;
+        PlayTimeConfig settings = this.settings;
+        int untilNextDay = settings.allowance.secondsUntilNextDay(now);
+        return untilNextDay + settings.schedule.secondsUntilAllowed(now + untilNextDay);
+    }
+
+    public String getKickMessage(UUID uuid) {
+        long now = System.currentTimeMillis() / 1000;
+        PlayTimeConfig settings = this.settings;
+        int quotaLeft = getPolicy(this.sessions.get(uuid), settings).getTimeAllowed(now) - getPlayerPlayTime(uuid);
+        PlayTimeSchedule schedule = settings.schedule;
+        if (!schedule.isAllowed(now) && quotaLeft > 0) {
+            return "You can't play at this time! Come back in "
+                    + secondsToDaysHoursSecondsString(schedule.secondsUntilAllowed(now)) + "!";
+        }
+        return "You have exceeded the time allowed to play! Come back in "
+                + secondsToDaysHoursSecondsString(secondsUntilNextDay()) + "!";
     }
 
     public String secondsToDaysHoursSecondsString(int secondsToConvert) {
@@ -158,219 +315,556 @@ public final class PlayTimeLimiter extends Plugin {
     }
 
     public int getTimeAllowedInSeconds() {
-        int timeStarted = getConfig().getInt("timeStarted");
-        int secondsSince = (int) ((System.currentTimeMillis() / 1000) - timeStarted);
-        int secondsAllowed = 0;
-
-        // Add the initial time we give the player at the beginning
-        secondsAllowed += getConfig().getInt("initialTime");
-
-        // Then for each day including the first day (24 hours realtime) add the
-        // set amount of
-        // seconds to the time allowed
-        while (secondsSince >= 0) {
-            if (getConfig().getBoolean("timeTravels")) {
-                secondsAllowed += getConfig().getInt("timePerDay");
-            } else {
-                secondsAllowed = getConfig().getInt("timePerDay");
-            }
-            secondsSince -= 86400;
-        }
-
-        return secondsAllowed;
+        return settings.allowance.getTimeAllowed(System.currentTimeMillis() / 1000);
     }
 
     public int getTimeAllowedInSeconds(OfflinePlayer player) {
-        return getTimeAllowedInSeconds(player.getUUIDString());
+        return getTimeAllowedInSeconds(player.getUUID());
     }
 
     public int getTimeAllowedInSeconds(Player player) {
-        return getTimeAllowedInSeconds(player.getUUIDString());
+        return getTimeAllowedInSeconds(player.getUUID());
     }
 
-    private int getTimeAllowedInSeconds(String uuid) {
-        int secondsAllowed = this.getTimeAllowedInSeconds();
+    public int getTimeAllowedInSeconds(UUID uuid) {
+        long now = System.currentTimeMillis() / 1000;
+        PlayTimeConfig settings = this.settings;
+        QuotaPolicy policy = getPolicy(this.sessions.get(uuid), settings);
+        if (policy.isUnlimited()) {
+            return Integer.MAX_VALUE;
+        }
 
         // Remove the amount of time the player has played to get their time
         // allowed
-        secondsAllowed -= getPlayerPlayTime(uuid);
+        int secondsAllowed = policy.getTimeAllowed(now) - getPlayerPlayTime(uuid);
+
+        // They also have to stop when the current play window closes
+        return Math.min(secondsAllowed, settings.schedule.secondsUntilClosed(now));
+    }
 
-        return secondsAllowed;
+    /**
+     * Gets the name of the quota policy cached for a player, see {@link #resolvePolicy(Player)}.
+     */
+    public String getPolicyName(UUID uuid) {
+        return getPolicy(this.sessions.get(uuid)).getName();
+    }
+
+    /**
+     * Works out which quota policy applies to a player from their groups and caches it in their session. Returns
+     * true if it changed.
+     */
+    public boolean resolvePolicy(Player player) {
+        PlayerSession session = getSession(player.getUUID());
+        QuotaPolicy policy = settings.policies.resolve(player);
+        QuotaPolicy old = session.getPolicy();
+        session.setPolicy(policy);
+        publish(session);
+        return old != null && !old.getName().equals(policy.getName());
+    }
+
+    private QuotaPolicy getPolicy(PlayerSession session) {
+        return getPolicy(session, this.settings);
+    }
+
+    /**
+     * Gets a player's policy against settings the caller has already read, so it agrees with anything else the
+     * caller takes from them even if the config is reloaded meanwhile.
+     */
+    private QuotaPolicy getPolicy(PlayerSession session, PlayTimeConfig settings) {
+        // Offline players who haven't been seen since the plugin started get the default
+        QuotaPolicy policy = session != null ? session.getPolicy() : null;
+        return policy != null ? policy : settings.policies.getDefault();
+    }
+
+    /**
+     * Called for every command run. Commands that can change groups or permissions mean the cached quota policies
+     * may be out of date, so they're resolved again once the command has had a chance to run.
+     */
+    public void onCommand(String command) {
+        PlayTimeConfig settings = this.settings;
+        if (!settings.policies.hasGroupPolicies()) {
+            return;
+        }
+        String name = command.startsWith("/") ? command.substring(1) : command;
+        if (settings.policyRefreshCommands.contains(name.toLowerCase(Locale.ENGLISH))) {
+            TaskManager.scheduleDelayedTaskInSeconds(new Runnable() {
+                public void run() {
+                    refreshPolicies();
+                }
+            }, 1);
+        }
+    }
+
+    /**
+     * Resolves the quota policy of every online player again and replans their checks.
+     */
+    public void refreshPolicies() {
+        for (Player player : this.server.getPlayerList()) {
+            PlayerSession session = getSession(player.getUUID());
+            QuotaPolicy old = session.getPolicy();
+            if (resolvePolicy(player)) {
+                this.audit(player.getName() + " now has the " + session.getPolicy().getName() + " quota");
+                // There's no snapshot to hand out until their playtime has been loaded
+                PlayTimeSnapshot snapshot = queries.getSnapshot(player.getUUID());
+                if (snapshot != null) {
+                    new PlayTimeQuotaChangeHook(player, snapshot, old.getName()).call();
+                }
+            }
+            scheduleChecks(session);
+        }
     }
 
     public void addPlayTime(OfflinePlayer player, int seconds) throws UnknownPlayerException {
-        if (this.timePlayed.containsKey(player.getUUIDString())) {
-            this.timePlayed.put(player.getUUIDString(), this.timePlayed.get(player.getUUIDString()) - seconds);
-        } else {
-            throw new UnknownPlayerException(player.getUUID());
+        addPlayTime(player.getUUID(), seconds);
+    }
+
+    public void addPlayTime(UUID uuid, int seconds) throws UnknownPlayerException {
+        PlayerSession session = this.sessions.get(uuid);
+        if (session == null || !session.isLoaded()) {
+            throw new UnknownPlayerException(uuid);
         }
+        synchronized (session) {
+            session.addTimePlayed(-seconds);
+            this.markDirty(session);
+        }
+        this.scheduleChecks(session);
     }
 
-    public void removePlayTime(OfflinePlayer player, int seconds) {
-        if (this.timePlayed.containsKey(player.getUUIDString())) {
-            this.timePlayed.put(player.getUUIDString(), this.timePlayed.get(player.getUUIDString()) + seconds);
-        } else {
-            this.timePlayed.put(player.getUUIDString(), seconds);
+    public void removePlayTime(OfflinePlayer player, int seconds) throws PlayTimeStoreException {
+        removePlayTime(player.getUUID(), seconds);
+    }
+
+    public void removePlayTime(UUID uuid, int seconds) throws PlayTimeStoreException {
+        PlayerSession session = getSession(uuid);
+        requireLoaded(session);
+        synchronized (session) {
+            session.addTimePlayed(seconds);
+            this.markDirty(session);
         }
+        this.scheduleChecks(session);
     }
 
-    public void setPlayTime(OfflinePlayer player, int seconds) {
-        this.timePlayed.put(player.getUUIDString(), seconds);
+    public void setPlayTime(OfflinePlayer player, int seconds) throws PlayTimeStoreException {
+        setPlayTime(player.getUUID(), seconds);
     }
 
-    public int getPlayerPlayTime(OfflinePlayer player) {
-        return getPlayerPlayTime(player.getUUIDString());
+    public void setPlayTime(UUID uuid, int seconds) throws PlayTimeStoreException {
+        PlayerSession session = getSession(uuid);
+        requireLoaded(session);
+        synchronized (session) {
+            session.setTimePlayed(seconds);
+            this.markDirty(session);
+        }
+        this.scheduleChecks(session);
     }
 
-    private int getPlayerPlayTime(String uuid) {
-        int timePlayed = 0;
-        if (this.timePlayed.containsKey(uuid)) {
-            timePlayed += this.timePlayed.get(uuid);
+    /**
+     * Gives every given player {@code seconds} more time to play (or less if negative) as one batch, loading any
+     * that aren't in memory with a single read and flushing once at the end. Returns how many were changed.
+     */
+    public int addPlayTime(Collection<UUID> uuids, int seconds) {
+        List<PlayerSession> loaded = loadPlayers(uuids);
+        for (PlayerSession session : loaded) {
+            synchronized (session) {
+                session.addTimePlayed(-seconds);
+                this.markDirty(session);
+            }
+            this.scheduleChecks(session);
+        }
+        this.savePlayTime();
+        return loaded.size();
+    }
+
+    /**
+     * Sets the playtime of every given player as one batch, see {@link #addPlayTime(Collection, int)}.
+     */
+    public int setPlayTime(Collection<UUID> uuids, int seconds) {
+        List<PlayerSession> loaded = loadPlayers(uuids);
+        for (PlayerSession session : loaded) {
+            synchronized (session) {
+                session.setTimePlayed(seconds);
+                this.markDirty(session);
+            }
+            this.scheduleChecks(session);
         }
-        if (this.timeLoggedIn.containsKey(uuid)) {
-            timePlayed += (int) ((System.currentTimeMillis() / 1000) - this.timeLoggedIn.get(uuid));
+        this.savePlayTime();
+        return loaded.size();
+    }
+
+    public int getPlayerPlayTime(OfflinePlayer player) {
+        return getPlayerPlayTime(player.getUUID());
+    }
+
+    public int getPlayerPlayTime(UUID uuid) {
+        PlayerSession session = this.sessions.get(uuid);
+        if (session == null) {
+            return 0;
         }
-        return timePlayed;
+        return session.getTimePlayed((int) (System.currentTimeMillis() / 1000));
     }
 
     public void setPlayerLoggedIn(OfflinePlayer player) {
-        setPlayerLoggedIn(player.getUUIDString());
+        setPlayerLoggedIn(player.getUUID());
     }
 
+    /**
+     * Starts counting a player's time. Their policy should already have been worked out with
+     * {@link #resolvePolicy(Player)}, which the join does before checking whether they're out of time.
+     */
     public void setPlayerLoggedIn(Player player) {
-        setPlayerLoggedIn(player.getUUIDString());
+        setPlayerLoggedIn(player.getUUID());
+        // There's no snapshot to hand out if their playtime couldn't be loaded
+        PlayTimeSnapshot snapshot = queries.getSnapshot(player.getUUID());
+        if (snapshot != null) {
+            new PlayTimeSessionStartHook(player, snapshot).call();
+        }
     }
 
-    private void setPlayerLoggedIn(String uuid) {
-        if (!this.timePlayed.containsKey(uuid)) {
-            this.timePlayed.put(uuid, 0);
-            this.savePlayTime();
+    private void setPlayerLoggedIn(UUID uuid) {
+        PlayerSession session = getSession(uuid);
+        boolean created = !loadPlayer(session);
+        boolean limited = hasPlayTime(session);
+        synchronized (session) {
+            if (created) {
+                this.markDirty(session);
+            }
+            session.logIn(limited ? (int) (System.currentTimeMillis() / 1000) : 0);
+            this.publish(session);
         }
-        if (hasPlayTime(uuid)) {
-            this.timeLoggedIn.put(uuid, (int) (System.currentTimeMillis() / 1000));
-        } else {
-            this.timeLoggedIn.put(uuid, 0);
+        if (created) {
+            this.savePlayTime();
         }
+        this.scheduleChecks(session);
     }
 
     public void setPlayerLoggedOut(OfflinePlayer player) {
-        setPlayerLoggedOut(player.getUUIDString());
+        setPlayerLoggedOut(player.getUUID());
     }
 
     public void setPlayerLoggedOut(Player player) {
-        setPlayerLoggedOut(player.getUUIDString());
+        setPlayerLoggedOut(player.getUUID());
     }
 
-    private void setPlayerLoggedOut(String uuid) {
-        if (this.timeLoggedIn.containsKey(uuid)) {
-            int timePlayed = (int) ((System.currentTimeMillis() / 1000) - this.timeLoggedIn.get(uuid));
-            if (this.timePlayed.containsKey(uuid)) {
-                timePlayed += this.timePlayed.get(uuid);
+    private void setPlayerLoggedOut(UUID uuid) {
+        PlayerSession session = this.sessions.get(uuid);
+        if (session == null) {
+            if (playTimeCheckerTask != null) {
+                playTimeCheckerTask.cancel(uuid);
             }
-            if (timePlayed > this.getTimeAllowedInSeconds()) {
-                timePlayed = this.getTimeAllowedInSeconds();
+            return;
+        }
+        int timePlayed = closeSession(session);
+        if (timePlayed < 0) {
+            return;
+        }
+        getLogman().info(
+                "Player " + getPlayerName(uuid) + " played for a total of " + timePlayed + " seconds!");
+        this.savePlayTime();
+    }
+
+    /**
+     * Folds the current session into a player's stored playtime and marks them offline, without saving. Returns
+     * their playtime, or -1 if they weren't online.
+     */
+    private int closeSession(PlayerSession session) {
+        if (playTimeCheckerTask != null) {
+            playTimeCheckerTask.cancel(session.getUUID());
+        }
+        synchronized (session) {
+            if (!session.isOnline()) {
+                return -1;
             }
-            this.timePlayed.put(uuid, timePlayed);
-            this.timeLoggedIn.remove(uuid);
-            getLogman().info(
-                    "Player " + Canary.getServer().getPlayerFromUUID(uuid).getName() + " played for a total of "
-                            + timePlayed + " seconds!");
-            this.savePlayTime();
+            int timePlayed = session.getTimePlayed((int) (System.currentTimeMillis() / 1000));
+            int timeAllowed = getPolicy(session).getTimeAllowed(System.currentTimeMillis() / 1000);
+            if (timePlayed > timeAllowed) {
+                timePlayed = timeAllowed;
+            }
+            session.setTimePlayed(timePlayed);
+            session.logOut();
+            this.markDirty(session);
+            return timePlayed;
         }
-        if (this.seenWarningMessages.containsKey(uuid + ":10")) {
-            this.seenWarningMessages.remove(uuid + ":10");
+    }
+
+    /**
+     * Records activity for a player, see {@link PlayTimeActivityListener}. Doesn't lock or allocate.
+     */
+    public void markActive(Player player) {
+        PlayerSession session = this.sessions.get(player.getUUID());
+        if (session != null) {
+            session.markActive((int) (System.currentTimeMillis() / 1000));
         }
-        if (this.seenWarningMessages.containsKey(uuid + ":60")) {
-            this.seenWarningMessages.remove(uuid + ":60");
+    }
+
+    /**
+     * Stops counting time for online players who haven't done anything for afkTimeoutSeconds, leaving out the
+     * time since they were last active, and starts counting again for idle players who have come back.
+     */
+    public void sweepIdlePlayers() {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        int timeout = settings.afkTimeoutSeconds;
+        for (Player player : this.server.getPlayerList()) {
+            PlayerSession session = this.sessions.get(player.getUUID());
+            if (session == null) {
+                continue;
+            }
+            int lastActive = session.getLastActive();
+            if (session.isIdle()) {
+                // Count from when they came back rather than from this sweep
+                if (now - lastActive < timeout && session.resume(lastActive)) {
+                    this.publish(session);
+                    this.audit(player.getName() + " is no longer idle");
+                    scheduleChecks(session);
+                }
+            } else if (now - lastActive >= timeout) {
+                boolean paused;
+                synchronized (session) {
+                    // Pausing folds the time played so far into the stored playtime, so it needs saving
+                    paused = session.pause(lastActive);
+                    if (paused) {
+                        this.markDirty(session);
+                    }
+                }
+                if (paused) {
+                    this.audit(player.getName() + " went idle, playtime paused");
+                }
+            }
         }
-        if (this.seenWarningMessages.containsKey(uuid + ":300")) {
-            this.seenWarningMessages.remove(uuid + ":300");
+    }
+
+    /**
+     * Closes every online player's session and queues everyone who changed as a single batch. Used when the server
+     * is stopping, where logging each player out on their own would save once per player.
+     */
+    public void saveOnShutdown() {
+        if (!hasStarted() || playTimeWriter == null) {
+            return;
+        }
+        int closed = 0;
+        for (PlayerSession session : this.sessions.values()) {
+            if (session.isOnline() && closeSession(session) >= 0) {
+                closed++;
+            }
+        }
+        int queued = this.dirty.size();
+        this.savePlayTime();
+        if (closed > 0 || queued > 0) {
+            getLogman().info("Closed " + closed + " session/s and queued " + queued + " player/s to be saved");
         }
     }
 
     public boolean hasPlayerSeenMessage(OfflinePlayer player, int time) {
-        return hasPlayerSeenMessage(player.getUUIDString(), time);
+        return hasPlayerSeenMessage(player.getUUID(), time);
     }
 
     public boolean hasPlayerSeenMessage(Player player, int time) {
-        return hasPlayerSeenMessage(player.getUUIDString(), time);
+        return hasPlayerSeenMessage(player.getUUID(), time);
     }
 
-    private boolean hasPlayerSeenMessage(String uuid, int time) {
-        if (this.seenWarningMessages.containsKey(uuid + ":" + time)) {
-            return this.seenWarningMessages.get(uuid + ":" + time);
-        } else {
-            return false;
-        }
+    private boolean hasPlayerSeenMessage(UUID uuid, int time) {
+        PlayerSession session = this.sessions.get(uuid);
+        return session != null && session.hasSeenWarning(time);
     }
 
     public void sentPlayerWarningMessage(OfflinePlayer player, int time) {
-        sentPlayerWarningMessage(player.getUUIDString(), time);
+        sentPlayerWarningMessage(player.getUUID(), time);
     }
 
     public void sentPlayerWarningMessage(Player player, int time) {
-        sentPlayerWarningMessage(player.getUUIDString(), time);
+        sentPlayerWarningMessage(player.getUUID(), time);
     }
 
-    private void sentPlayerWarningMessage(String uuid, int time) {
-        this.seenWarningMessages.put(uuid + ":" + time, true);
+    private void sentPlayerWarningMessage(UUID uuid, int time) {
+        getSession(uuid).setSeenWarning(time);
     }
 
     public void loadBlacklist(OfflinePlayer player) {
-        loadBlacklist(player.getUUIDString());
+        loadPlayer(getSession(player.getUUID()));
     }
 
     public void loadBlacklist(Player player) {
-        loadBlacklist(player.getUUIDString());
+        loadPlayer(getSession(player.getUUID()));
     }
 
-    private void loadBlacklist(String uuid) {
-        if (getConfig().getBoolean("blacklist")) {
-            PlayTimeBlacklistAccess dataAccess = new PlayTimeBlacklistAccess();
-            try {
-                HashMap<String, Object> filter = new HashMap<String, Object>();
-                filter.put("player_uuid", uuid);
+    public boolean hasPlayTime(OfflinePlayer player) {
+        return hasPlayTime(getSession(player.getUUID()));
+    }
 
-                Database.get().load(dataAccess, filter);
-            } catch (DatabaseReadException e) {
-                getLogman().warn("Failed to read from database", e);
-            }
-            if (dataAccess.hasData()) {
-                blacklist.put(dataAccess.uuid, dataAccess.blacklisted);
-            } else {
-                blacklist.put(uuid, true);
+    public boolean hasPlayTime(Player player) {
+        return hasPlayTime(getSession(player.getUUID()));
+    }
+
+    public boolean hasPlayTime(UUID uuid) {
+        return hasPlayTime(getSession(uuid));
+    }
+
+    private boolean hasPlayTime(PlayerSession session) {
+        if (!session.isLoaded()) {
+            loadPlayer(session);
+        }
+        return isLimited(session);
+    }
+
+    private boolean isLimited(PlayerSession session) {
+        return isLimited(session, this.settings);
+    }
+
+    private boolean isLimited(PlayerSession session, PlayTimeConfig settings) {
+        if (getPolicy(session, settings).isUnlimited()) {
+            return false;
+        }
+        // Without the blacklist everyone's playtime is limited
+        return !settings.blacklist || session.isBlacklisted();
+    }
+
+    /**
+     * Replaces the API's snapshot of a session with its current state.
+     */
+    private void publish(PlayerSession session) {
+        synchronized (session) {
+            if (!session.isLoaded()) {
+                return;
             }
+            long now = System.currentTimeMillis() / 1000;
+            PlayTimeConfig settings = this.settings;
+            QuotaPolicy policy = getPolicy(session, settings);
+            int untilClosed = settings.schedule.secondsUntilClosed(now);
+            queries.publish(new PlayTimeSnapshot(session.getUUID(), session.getTimePlayed(),
+                    session.getLoggedInAt(), session.isOnline(), isLimited(session, settings), policy.getName(),
+                    policy.getTimeAllowed(now), untilClosed == Integer.MAX_VALUE ? Long.MAX_VALUE : now + untilClosed));
         }
     }
 
-    public boolean hasPlayTime(OfflinePlayer player) {
-        return hasPlayTime(player.getUUIDString());
+    public void addToPlayTimeBlacklist(OfflinePlayer player, boolean add) throws PlayTimeStoreException {
+        addToPlayTimeBlacklist(getSession(player.getUUID()), add);
     }
 
-    public boolean hasPlayTime(Player player) {
-        return hasPlayTime(player.getUUIDString());
+    public void addToPlayTimeBlacklist(Player player, boolean add) throws PlayTimeStoreException {
+        addToPlayTimeBlacklist(getSession(player.getUUID()), add);
     }
 
-    private boolean hasPlayTime(String uuid) {
-        if (!blacklist.containsKey(uuid)) {
-            loadBlacklist(uuid);
+    public void addToPlayTimeBlacklist(UUID uuid, boolean add) throws PlayTimeStoreException {
+        addToPlayTimeBlacklist(getSession(uuid), add);
+    }
+
+    private void addToPlayTimeBlacklist(PlayerSession session, boolean add) throws PlayTimeStoreException {
+        requireLoaded(session);
+        synchronized (session) {
+            session.setBlacklisted(add);
+            markDirty(session);
         }
-        return blacklist.get(uuid);
+        scheduleChecks(session);
     }
 
-    public void addToPlayTimeBlacklist(OfflinePlayer player, boolean add) {
-        addToPlayTimeBlacklist(player.getUUIDString(), add);
+    private void scheduleChecks(PlayerSession session) {
+        if (playTimeCheckerTask == null || !session.isOnline()) {
+            return;
+        }
+        if (hasPlayTime(session)) {
+            playTimeCheckerTask.schedule(session.getUUID(), getTimeAllowedInSeconds(session.getUUID()));
+        } else {
+            playTimeCheckerTask.cancel(session.getUUID());
+        }
     }
 
-    public void addToPlayTimeBlacklist(Player player, boolean add) {
-        addToPlayTimeBlacklist(player.getUUIDString(), add);
+    private PlayerSession getSession(UUID uuid) {
+        PlayerSession session = this.sessions.get(uuid);
+        if (session == null) {
+            PlayerSession created = new PlayerSession(uuid);
+            session = this.sessions.putIfAbsent(uuid, created);
+            if (session == null) {
+                session = created;
+            }
+        }
+        session.touch();
+        return session;
     }
 
-    private void addToPlayTimeBlacklist(String uuid, boolean add) {
-        if (!blacklist.containsKey(uuid)) {
-            loadBlacklist(uuid);
+    /**
+     * Drops the least recently used sessions once more than maxCachedPlayers are in memory. Only offline players
+     * with nothing left to write are dropped, anyone dirty gets written by the save before this and is dropped on
+     * a later pass. Dropped players are loaded again from the store the next time they're needed. The limit only
+     * covers sessions, the leaderboard keeps every known player (one small entry each) so ranks stay exact.
+     */
+    public int evictPlayers() {
+        clearStalePrefetches();
+        int max = settings.maxCachedPlayers;
+        int excess = this.sessions.size() - max;
+        if (max <= 0 || excess <= 0) {
+            return 0;
+        }
+        long idleSince = System.currentTimeMillis() - 60000;
+        List<PlayerSession> candidates = new ArrayList<PlayerSession>();
+        for (PlayerSession session : this.sessions.values()) {
+            // Leave anything used in the last minute in case a command or hook still has hold of it
+            if (session.getLastUsed() < idleSince && isEvictable(session)) {
+                candidates.add(session);
+            }
+        }
+        Collections.sort(candidates, new Comparator<PlayerSession>() {
+            public int compare(PlayerSession a, PlayerSession b) {
+                return a.getLastUsed() < b.getLastUsed() ? -1 : (a.getLastUsed() == b.getLastUsed() ? 0 : 1);
+            }
+        });
+
+        int evicted = 0;
+        for (PlayerSession session : candidates) {
+            if (evicted >= excess) {
+                break;
+            }
+            synchronized (session) {
+                // Check again now nothing else can change it
+                if (session.getLastUsed() < idleSince && isEvictable(session)
+                        && this.sessions.remove(session.getUUID(), session)) {
+                    queries.remove(session.getUUID());
+                    evicted++;
+                }
+            }
+        }
+        stats.recordEvictions(evicted);
+        if (evicted > 0) {
+            getLogman().debug("Evicted " + evicted + " player/s from memory");
+        }
+        return evicted;
+    }
+
+    /**
+     * Drops finished prefetches for players who never joined, such as those turned away by a ban or the
+     * whitelist, so they don't keep the session in memory for good.
+     */
+    private void clearStalePrefetches() {
+        long idleSince = System.currentTimeMillis() - 60000;
+        for (Map.Entry<UUID, FutureTask<Void>> entry : this.prefetches.entrySet()) {
+            PlayerSession session = this.sessions.get(entry.getKey());
+            if (entry.getValue().isDone()
+                    && (session == null || (!session.isOnline() && session.getLastUsed() < idleSince))) {
+                this.prefetches.remove(entry.getKey(), entry.getValue());
+            }
         }
-        blacklist.replace(uuid, add);
+    }
+
+    private boolean isEvictable(PlayerSession session) {
+        UUID uuid = session.getUUID();
+        return !session.isOnline() && !this.dirty.contains(uuid) && !isWritePending(uuid)
+                && !this.prefetches.containsKey(uuid);
+    }
+
+    /**
+     * Gets the current settings. They never change, a reload swaps in a new instance.
+     */
+    public PlayTimeConfig getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * Gets the API for other plugins to read playtime from.
+     */
+    public PlayTimeAPI getAPI() {
+        return this.queries;
+    }
+
+    public int getCachedSessionCount() {
+        return this.sessions.size();
     }
 
     public boolean start() {
@@ -378,17 +872,70 @@ public final class PlayTimeLimiter extends Plugin {
             return false;
         } else {
             this.started = true;
-            String initial = (getConfig().getInt("initialTime") / 60 / 60) + "";
-            String perday = (getConfig().getInt("timePerDay") / 60 / 60) + "";
-            Canary.getServer().broadcastMessage(
+            String initial = (settings.initialTime / 60 / 60) + "";
+            String perday = (settings.timePerDay / 60 / 60) + "";
+            this.server.broadcastMessage(
                     Colors.GREEN + "Playtime has now started! You have " + initial
                             + " hour/s of playtime to start with and " + perday + " hour/s of playtime added per day!");
             getConfig().setInt("timeStarted", (int) (System.currentTimeMillis() / 1000));
             getConfig().save();
+            applySettings(PlayTimeConfig.load(getConfig(), getLogman()));
             return true;
         }
     }
 
+    /**
+     * Reads the config file again and swaps in the new settings. Task intervals, quotas and schedules change
+     * straight away, anything that needs a restart is logged and returned.
+     */
+    public List<String> reload() {
+        getConfig().reload();
+        PlayTimeConfig old = this.settings;
+        PlayTimeConfig fresh = PlayTimeConfig.load(getConfig(), getLogman());
+        applySettings(fresh);
+
+        // Re-arm the tasks with the new intervals
+        if (playTimeSaverTask != null) {
+            TaskManager.removeTask(playTimeSaverTask);
+            TaskManager.scheduleContinuedTaskInSeconds(playTimeSaverTask, fresh.secondsBetweenPlayTimeSaving,
+                    fresh.secondsBetweenPlayTimeSaving);
+        }
+        if (playTimeJournalTask != null) {
+            TaskManager.removeTask(playTimeJournalTask);
+            TaskManager.scheduleContinuedTaskInSeconds(playTimeJournalTask, fresh.secondsBetweenJournalCheckpoints,
+                    fresh.secondsBetweenJournalCheckpoints);
+        }
+        if (playTimeActivityTask != null) {
+            TaskManager.removeTask(playTimeActivityTask);
+            TaskManager.scheduleContinuedTaskInSeconds(playTimeActivityTask, fresh.secondsBetweenAfkSweeps,
+                    fresh.secondsBetweenAfkSweeps);
+        }
+
+        List<String> restart = old.getRestartRequired(fresh);
+        if (!restart.isEmpty()) {
+            getLogman().warn("Restart the server for changes to " + restart + " to take effect");
+        }
+        getLogman().info("Reloaded config");
+        return restart;
+    }
+
+    /**
+     * Swaps in new settings. Quota policies cached in sessions point at the old settings, so they're swapped for
+     * the new policy with the same name and online players are resolved again.
+     */
+    private void applySettings(PlayTimeConfig fresh) {
+        this.settings = fresh;
+        for (PlayerSession session : this.sessions.values()) {
+            QuotaPolicy policy = session.getPolicy();
+            if (policy != null) {
+                QuotaPolicy renamed = fresh.policies.get(policy.getName());
+                session.setPolicy(renamed != null ? renamed : fresh.policies.getDefault());
+            }
+            publish(session);
+        }
+        refreshPolicies();
+    }
+
     public boolean stop() {
         if (!this.started) {
             return false;
@@ -402,58 +949,479 @@ public final class PlayTimeLimiter extends Plugin {
         return this.started;
     }
 
+    /**
+     * Starts loading a player's playtime and blacklist state in the background, ready for when they join.
+     */
+    public void prefetchPlayer(final UUID uuid) {
+        if (!hasStarted() || this.prefetches.containsKey(uuid)) {
+            return;
+        }
+        FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            public void run() {
+                loadPlayTime(uuid);
+            }
+        }, null);
+        if (this.prefetches.putIfAbsent(uuid, task) == null) {
+            TaskManager.executeTask(task);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for a prefetch started by prefetchPlayer. Returns true if the player's data
+     * is ready to use.
+     */
+    public boolean awaitPrefetch(UUID uuid, long timeoutMillis) {
+        FutureTask<Void> task = this.prefetches.get(uuid);
+        if (task == null) {
+            PlayerSession session = this.sessions.get(uuid);
+            return session != null && session.isLoaded();
+        }
+        try {
+            task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            getLogman().warn("Failed to prefetch playtime", e.getCause());
+            this.prefetches.remove(uuid, task);
+            return false;
+        }
+    }
+
+    public void clearPrefetch(UUID uuid) {
+        this.prefetches.remove(uuid);
+    }
+
+    /**
+     * Returns true if the player's quota policy is known, either because there are no group quotas or because it
+     * was resolved when they were last online.
+     */
+    public boolean isPolicyKnown(UUID uuid) {
+        PlayerSession session = this.sessions.get(uuid);
+        return !settings.policies.hasGroupPolicies() || (session != null && session.getPolicy() != null);
+    }
+
+    public boolean isOutOfPlayTime(UUID uuid) {
+        return hasPlayTime(getSession(uuid)) && getTimeAllowedInSeconds(uuid) <= 0;
+    }
+
     public void loadPlayTime(OfflinePlayer player) {
-        loadPlayTime(player.getUUIDString());
+        loadPlayTime(player.getUUID());
     }
 
     public void loadPlayTime(Player player) {
-        loadPlayTime(player.getUUIDString());
+        loadPlayTime(player.getUUID());
     }
 
-    private void loadPlayTime(String uuid) {
+    public void loadPlayTime(UUID uuid) {
         if (!hasStarted()) {
             return;
         }
+        loadPlayer(getSession(uuid));
+    }
+
+    /**
+     * Loads a player's playtime and blacklist state with a single read of their row. Returns false if they don't
+     * have a row yet.
+     */
+    private boolean loadPlayer(PlayerSession session) {
+        UUID uuid = session.getUUID();
+        if (session.isLoaded()) {
+            // Every change goes through the cache, so what we have is already up to date
+            stats.recordCacheHit();
+            return true;
+        }
+        if (loadFromWriter(session)) {
+            stats.recordCacheHit();
+            return true;
+        }
+        stats.recordCacheMiss();
 
-        PlayTimeDataAccess dataAccess = new PlayTimeDataAccess();
+        PlayTimeRecord record;
         try {
-            HashMap<String, Object> filter = new HashMap<String, Object>();
-            filter.put("player_uuid", uuid);
+            record = store.load(uuid);
+        } catch (PlayTimeStoreException e) {
+            getLogman().warn("Failed to read playtime", e);
+            // Leave them unloaded rather than overwriting their row, and don't go creating a new one. Any time they
+            // play meanwhile is kept in the session and added to their row once it can be read.
+            return true;
+        }
+        load(session, record);
+        return record != null;
+    }
 
-            Database.get().load(dataAccess, filter);
-        } catch (DatabaseReadException e) {
-            getLogman().warn("Failed to read from database", e);
+    /**
+     * Loads a player before an admin change, throwing if their row couldn't be read so the change isn't made to
+     * playtime we don't know.
+     */
+    private void requireLoaded(PlayerSession session) throws PlayTimeStoreException {
+        loadPlayer(session);
+        if (!session.isLoaded()) {
+            throw new PlayTimeStoreException("Couldn't read playtime for " + getPlayerName(session.getUUID()), null);
         }
-        if (dataAccess.hasData()) {
-            timePlayed.put(dataAccess.uuid, dataAccess.playtime);
-        } else {
-            timePlayed.put(uuid, 0);
+    }
+
+    /**
+     * Loads a player from a write that is still queued, since the store won't have it yet. Returns false if
+     * nothing is queued for them.
+     */
+    private boolean loadFromWriter(PlayerSession session) {
+        PlayTimeRecord record = playTimeWriter != null ? playTimeWriter.getPending(session.getUUID()) : null;
+        if (record == null) {
+            return false;
         }
+        load(session, record);
+        return true;
     }
 
+    private void load(PlayerSession session, PlayTimeRecord record) {
+        synchronized (session) {
+            // Someone else may have loaded it while we were reading
+            if (!session.isLoaded()) {
+                if (record != null) {
+                    session.load(record.getPlaytime(), record.isBlacklisted());
+                } else {
+                    session.load(0, true);
+                }
+                leaderboard.update(session.getUUID(), session.getTimePlayed());
+                publish(session);
+            }
+        }
+    }
+
+    /**
+     * Loads the given players, reading all of those that aren't in memory from the store in one go.
+     */
+    private List<PlayerSession> loadPlayers(Collection<UUID> uuids) {
+        List<PlayerSession> loaded = new ArrayList<PlayerSession>(uuids.size());
+        List<UUID> missing = new ArrayList<UUID>();
+        for (UUID uuid : uuids) {
+            PlayerSession session = getSession(uuid);
+            loaded.add(session);
+            if (!session.isLoaded() && !loadFromWriter(session)) {
+                missing.add(uuid);
+            }
+        }
+        if (missing.isEmpty()) {
+            stats.recordCacheHit();
+            return loaded;
+        }
+        stats.recordCacheMiss();
+
+        Map<UUID, PlayTimeRecord> records;
+        try {
+            records = store.loadAll(missing);
+        } catch (PlayTimeStoreException e) {
+            getLogman().warn("Failed to read playtime", e);
+            // Leave out anyone we couldn't read rather than overwriting their row
+            for (UUID uuid : missing) {
+                PlayerSession session = this.sessions.get(uuid);
+                if (session != null && !session.isLoaded()) {
+                    loaded.remove(session);
+                }
+            }
+            return loaded;
+        }
+        for (UUID uuid : missing) {
+            load(getSession(uuid), records.get(uuid));
+        }
+        return loaded;
+    }
+
+    /**
+     * Loads every stored player in one pass. Players that were loaded or changed in the meantime are left as they
+     * are, anyone missed here is still loaded on demand by loadPlayTime.
+     */
+    public void preloadPlayTime() {
+        long start = System.currentTimeMillis();
+        Map<UUID, PlayTimeRecord> records;
+        try {
+            records = store.loadAll();
+        } catch (PlayTimeStoreException e) {
+            getLogman().warn("Failed to preload playtime", e);
+            return;
+        }
+
+        int loaded = 0;
+        int max = settings.maxCachedPlayers;
+        for (PlayTimeRecord record : records.values()) {
+            if (max > 0 && this.sessions.size() >= max) {
+                // Out of room, the rest only go on the leaderboard
+                leaderboard.seed(record.getUUID(), record.getPlaytime());
+                continue;
+            }
+            PlayerSession session = getSession(record.getUUID());
+            synchronized (session) {
+                if (!session.isLoaded() && !dirty.contains(record.getUUID())) {
+                    session.load(record.getPlaytime(), record.isBlacklisted());
+                    leaderboard.update(record.getUUID(), record.getPlaytime());
+                    publish(session);
+                    loaded++;
+                }
+            }
+        }
+        getLogman().info(String.format("Preloaded %d of %d playtime rows in %dms", loaded, records.size(),
+                System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Puts every stored player on the leaderboard without loading them. Anyone already on it has newer state,
+     * so they're left alone.
+     */
+    public void seedLeaderboard() {
+        long start = System.currentTimeMillis();
+        Map<UUID, PlayTimeRecord> records;
+        try {
+            records = store.loadAll();
+        } catch (PlayTimeStoreException e) {
+            getLogman().warn("Failed to load the playtime leaderboard", e);
+            return;
+        }
+        for (PlayTimeRecord record : records.values()) {
+            leaderboard.seed(record.getUUID(), record.getPlaytime());
+        }
+        getLogman().info(String.format("Loaded %d player/s into the playtime leaderboard in %dms", records.size(),
+                System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Gets the {@code n} players with the most playtime. Online players are ranked by their live playtime.
+     */
+    public List<PlayTimeLeaderboard.Entry> getTopPlayers(int n) {
+        Map<UUID, Integer> live = getLivePlayTimes();
+        // Online players can only have moved up, so asking for that many extra covers everyone they displaced
+        List<PlayTimeLeaderboard.Entry> top = new ArrayList<PlayTimeLeaderboard.Entry>(n + live.size());
+        for (PlayTimeLeaderboard.Entry entry : leaderboard.top(n + live.size())) {
+            if (!live.containsKey(entry.uuid)) {
+                top.add(entry);
+            }
+        }
+        for (Map.Entry<UUID, Integer> entry : live.entrySet()) {
+            top.add(new PlayTimeLeaderboard.Entry(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(top);
+        return top.size() > n ? top.subList(0, n) : top;
+    }
+
+    /**
+     * Gets a player's position on the leaderboard, starting at 1 with ties sharing a position. Returns 0 if the
+     * player has no playtime stored.
+     */
+    public int getRank(UUID uuid) {
+        Map<UUID, Integer> live = getLivePlayTimes();
+        Integer playtime = live.get(uuid);
+        if (playtime == null) {
+            playtime = leaderboard.get(uuid);
+            if (playtime == null) {
+                return 0;
+            }
+        }
+        int above = leaderboard.countAbove(playtime);
+        // Swap online players' stored playtime for their live playtime
+        for (Map.Entry<UUID, Integer> entry : live.entrySet()) {
+            if (entry.getKey().equals(uuid)) {
+                continue;
+            }
+            Integer stored = leaderboard.get(entry.getKey());
+            if (stored != null && stored > playtime) {
+                above--;
+            }
+            if (entry.getValue() > playtime) {
+                above++;
+            }
+        }
+        return above + 1;
+    }
+
+    public int getLeaderboardSize() {
+        return leaderboard.size();
+    }
+
+    private Map<UUID, Integer> getLivePlayTimes() {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        Map<UUID, Integer> live = new HashMap<UUID, Integer>();
+        for (Player player : this.server.getPlayerList()) {
+            PlayerSession session = this.sessions.get(player.getUUID());
+            if (session != null && session.isLoaded() && session.isOnline()) {
+                live.put(session.getUUID(), session.getTimePlayed(now));
+            }
+        }
+        return live;
+    }
+
+    private PlayTimeStore createStore(String type) {
+        if ("file".equalsIgnoreCase(type)) {
+            return new FilePlayTimeStore(getDataFolder(), settings.storageSync,
+                    settings.storageCompactAfter);
+        } else if ("memory".equalsIgnoreCase(type)) {
+            getLogman().warn("Using in-memory storage, playtime will be lost when the server stops!");
+            return new MemoryPlayTimeStore();
+        } else if (!"canary".equalsIgnoreCase(type)) {
+            getLogman().warn("Unknown storage type " + type + ", using the Canary database");
+        }
+        return new CanaryPlayTimeStore();
+    }
+
+    /**
+     * Imports the playtime.json used by old versions. The file is streamed in batches of migrationBatchSize
+     * players, each merged with what's already stored (keeping the higher playtime) and written before moving on.
+     * Progress is kept in playtime.json.progress, so if the server dies part way through the import carries on
+     * from the last finished batch. Re-importing a batch does no harm either way.
+     */
     public void loadOldPlayTime() {
         // Old data file, code transfers old data over
         File file = new File(getDataFolder(), "playtime.json");
         if (!file.exists()) {
             getLogman().debug("old data file doesn't exist, no data will be transfered over.");
+            return;
+        }
+        File progressFile = new File(getDataFolder(), "playtime.json.progress");
+        int batchSize = Math.max(1, settings.migrationBatchSize);
+        int done = readMigrationProgress(progressFile);
+        if (done > 0) {
+            getLogman().info("Resuming import of playtime.json after " + done + " player/s");
         } else {
-            if (!getDataFolder().exists()) {
-                getDataFolder().mkdirs();
-            }
             getLogman().info("Loading data from playtime.json");
-            FileReader fileReader;
-            try {
-                fileReader = new FileReader(file);
-                java.lang.reflect.Type type = new TypeToken<Map<String, Integer>>() {
-                }.getType();
-                this.timePlayed = GSON.fromJson(fileReader, type);
-                fileReader.close();
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
+        }
+
+        long start = System.currentTimeMillis();
+        int read = 0;
+        int flushed = done;
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            Map<UUID, Integer> batch = new LinkedHashMap<UUID, Integer>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                int playtime = reader.nextInt();
+                if (read++ < done) {
+                    continue;
+                }
+                try {
+                    batch.put(UUID.fromString(name), playtime);
+                } catch (IllegalArgumentException e) {
+                    getLogman().warn("Skipping playtime.json entry with invalid UUID " + name);
+                }
+                if (read - flushed >= batchSize) {
+                    importOldPlayTime(batch);
+                    batch.clear();
+                    flushed = read;
+                    writeMigrationProgress(progressFile, read);
+                    getLogman().info(String.format("Imported %d player/s from playtime.json in %dms", read,
+                            System.currentTimeMillis() - start));
+                }
+            }
+            reader.endObject();
+            importOldPlayTime(batch);
+        } catch (IOException e) {
+            getLogman().warn("Failed to import playtime.json, it will be retried on the next start", e);
+            return;
+        } catch (IllegalStateException e) {
+            getLogman().warn("playtime.json is malformed, stopped importing after " + read + " player/s", e);
+            return;
+        } catch (NumberFormatException e) {
+            getLogman().warn("playtime.json is malformed, stopped importing after " + read + " player/s", e);
+            return;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
-            file.renameTo(new File(getDataFolder(), "oldplaytime.json"));
+        }
+
+        file.renameTo(new File(getDataFolder(), "oldplaytime.json"));
+        progressFile.delete();
+        getLogman().info(String.format("Finished importing %d player/s from playtime.json in %dms", read,
+                System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Merges one batch of legacy playtimes and waits for it to be written. Players who are in memory are changed
+     * there, everyone else is read from and written straight back to the store without creating a session.
+     */
+    private void importOldPlayTime(Map<UUID, Integer> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<UUID, PlayTimeRecord> stored;
+        try {
+            stored = store.loadAll(batch.keySet());
+        } catch (PlayTimeStoreException e) {
+            throw new IOException("Failed to read existing playtime", e);
+        }
+        for (Map.Entry<UUID, Integer> entry : batch.entrySet()) {
+            UUID uuid = entry.getKey();
+            PlayerSession session = this.sessions.get(uuid);
+            if (session != null && (session.isLoaded() || dirty.contains(uuid) || isWritePending(uuid))) {
+                loadPlayer(session);
+                if (!session.isLoaded()) {
+                    throw new IOException("Failed to read existing playtime for " + uuid);
+                }
+                synchronized (session) {
+                    if (entry.getValue() > session.getTimePlayed()) {
+                        session.setTimePlayed(entry.getValue());
+                        this.markDirty(session);
+                    }
+                }
+                continue;
+            }
+            PlayTimeRecord record = stored.get(uuid);
+            if (record == null) {
+                playTimeWriter.queue(new PlayTimeRecord(uuid, entry.getValue(), true));
+                leaderboard.update(uuid, entry.getValue());
+            } else if (entry.getValue() > record.getPlaytime()) {
+                playTimeWriter.queue(new PlayTimeRecord(uuid, entry.getValue(), record.isBlacklisted()));
+                leaderboard.update(uuid, entry.getValue());
+            }
+        }
+        savePlayTime();
+        if (!awaitWrites(60000)) {
+            throw new IOException("Timed out waiting for imported playtime to be written");
+        }
+    }
+
+    private int readMigrationProgress(File progressFile) {
+        if (!progressFile.exists()) {
+            return 0;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(progressFile));
+            return Integer.parseInt(reader.readLine().trim());
+        } catch (Exception e) {
+            getLogman().warn("Couldn't read playtime.json.progress, importing from the start", e);
+            return 0;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void writeMigrationProgress(File progressFile, int done) throws IOException {
+        File temp = new File(progressFile.getPath() + ".tmp");
+        FileWriter writer = new FileWriter(temp);
+        try {
+            writer.write(Integer.toString(done));
+        } finally {
+            writer.close();
+        }
+        if (progressFile.exists() && !progressFile.delete()) {
+            throw new IOException("Couldn't replace " + progressFile);
+        }
+        if (!temp.renameTo(progressFile)) {
+            throw new IOException("Couldn't replace " + progressFile);
         }
     }
 
@@ -462,46 +1430,301 @@ public final class PlayTimeLimiter extends Plugin {
     }
 
     public void savePlayTime(boolean force) {
-        if (!hasStarted()) {
+        if (force) {
+            saveOnShutdown();
             return;
         }
-        if (force) {
-            for (String key : this.timeLoggedIn.keySet()) {
-                this.setPlayerLoggedOut(Canary.getServer().getOfflinePlayer(key));
+        if (!hasStarted() || playTimeWriter == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        queueDirty();
+        stats.recordSave(System.nanoTime() - start);
+    }
+
+    private void queueDirty() {
+        if (this.dirty.isEmpty()) {
+            return;
+        }
+
+        // Take the current set of changed players so the flush is one batch of writes. Each entry is taken
+        // under the session lock so a concurrent change is either in this batch or marked for the next one. The
+        // record is queued after letting go of the session, as queue() waits when the writer is behind and changes
+        // to the player shouldn't wait with it. Flushes take turns so an older record can't be queued after a newer.
+        int queued = 0;
+        int unread = 0;
+        synchronized (this.flushLock) {
+            for (Iterator<UUID> it = this.dirty.iterator(); it.hasNext();) {
+                UUID uuid = it.next();
+                PlayerSession session = this.sessions.get(uuid);
+                if (session == null) {
+                    it.remove();
+                    continue;
+                }
+                if (!session.isLoaded()) {
+                    // Their row couldn't be read when they joined. Try again so the time they've played since is
+                    // added to it, and keep them marked until it can be read rather than overwriting it.
+                    loadPlayer(session);
+                    if (!session.isLoaded()) {
+                        unread++;
+                        continue;
+                    }
+                }
+                PlayTimeRecord record;
+                synchronized (session) {
+                    it.remove();
+                    record = new PlayTimeRecord(uuid, session.getTimePlayed(), session.isBlacklisted());
+                }
+                playTimeWriter.queue(record);
+                queued++;
+            }
+        }
+        if (unread > 0) {
+            getLogman().warn("Couldn't read playtime for " + unread + " player/s, their changes will be saved once it"
+                    + " can be read");
+        }
+        getLogman().debug("Queued playtime for " + queued + " player/s");
+    }
+
+    /**
+     * Flushes changed players to the database and, once they've been written, drops the journal entries covering
+     * them. Online players are checkpointed again first, since their live time isn't in the database.
+     */
+    public void savePlayTimeAndCompact() {
+        PlayTimeJournal journal = this.journal;
+        if (journal == null) {
+            savePlayTime();
+            evictPlayers();
+            return;
+        }
+        try {
+            long mark = journal.mark();
+            savePlayTime();
+            if (playTimeWriter != null && awaitWrites(60000) && checkpointJournal()) {
+                journal.discard(mark);
             }
+        } catch (IOException e) {
+            getLogman().warn("Failed to trim playtime journal", e);
         }
+        evictPlayers();
+    }
 
-        for (String key : this.timePlayed.keySet()) {
-            PlayTimeDataAccess dataAccess = new PlayTimeDataAccess();
-            dataAccess.uuid = key;
-            dataAccess.playtime = this.timePlayed.get(key);
+    /**
+     * Records the live playtime of everyone online in the journal, so a crash loses at most the time since the last
+     * checkpoint. Returns false if the journal couldn't be written.
+     */
+    public boolean checkpointJournal() {
+        PlayTimeJournal journal = this.journal;
+        if (journal == null) {
+            return false;
+        }
+        int now = (int) (System.currentTimeMillis() / 1000);
+        for (PlayerSession session : this.sessions.values()) {
+            synchronized (session) {
+                if (session.isOnline() && session.isLoaded()) {
+                    try {
+                        journal.append(session.getUUID(), session.getTimePlayed(now), session.isBlacklisted());
+                    } catch (IOException e) {
+                        getLogman().warn("Failed to write to playtime journal", e);
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
 
-            HashMap<String, Object> filter = new HashMap<String, Object>();
-            filter.put("player_uuid", key);
+    private void openJournal() {
+        PlayTimeJournal opened = new PlayTimeJournal(getDataFolder(), settings.journalSync);
+        Map<UUID, PlayTimeJournal.Entry> replayed;
+        try {
+            replayed = opened.open();
+        } catch (IOException e) {
+            getLogman().warn("Failed to open playtime journal, continuing without it", e);
+            opened.close();
+            return;
+        }
+        // The journal is newer than the database, so it wins. These get written back on the next save.
+        for (Map.Entry<UUID, PlayTimeJournal.Entry> entry : replayed.entrySet()) {
+            PlayerSession session = getSession(entry.getKey());
+            synchronized (session) {
+                session.load(entry.getValue().playtime, entry.getValue().blacklisted);
+                this.dirty.add(entry.getKey());
+                leaderboard.update(entry.getKey(), entry.getValue().playtime);
+                publish(session);
+            }
+        }
+        this.journal = opened;
+        if (opened.getSkippedRecords() > 0) {
+            getLogman().warn("Skipped " + opened.getSkippedRecords() + " corrupt record/s in the playtime journal");
+        }
+        if (!replayed.isEmpty()) {
+            getLogman().info("Replayed " + replayed.size() + " player/s from the playtime journal");
+        }
+    }
 
+    /**
+     * Marks a player as needing to be saved. Must be called while holding the session's lock.
+     */
+    private void markDirty(PlayerSession session) {
+        // Put it back if it was evicted while the caller had hold of it, so the change isn't lost
+        this.sessions.putIfAbsent(session.getUUID(), session);
+        this.dirty.add(session.getUUID());
+        if (!session.isLoaded()) {
+            // Only the time played since a failed read is known, it's added to their row once that can be read
+            return;
+        }
+        this.leaderboard.update(session.getUUID(), session.getTimePlayed());
+        this.publish(session);
+        PlayTimeJournal journal = this.journal;
+        if (journal != null) {
             try {
-                Database.get().update(dataAccess, filter);
-            } catch (DatabaseWriteException e) {
-                getLogman().warn("Failed to write to database", e);
+                journal.append(session.getUUID(), session.getTimePlayed(), session.isBlacklisted());
+            } catch (IOException e) {
+                getLogman().warn("Failed to write to playtime journal", e);
             }
         }
     }
 
-    public void saveBlacklist() {
-        for (String key : this.blacklist.keySet()) {
-            PlayTimeBlacklistAccess dataAccess = new PlayTimeBlacklistAccess();
-            dataAccess.uuid = key;
-            dataAccess.blacklisted = this.blacklist.get(key);
+    /**
+     * Waits up to {@code timeoutMillis} for everything queued so far to be written. Returns false if it timed out.
+     */
+    boolean awaitWrites(long timeoutMillis) {
+        PlayTimeWriter writer = this.playTimeWriter;
+        return writer == null || writer.awaitIdle(timeoutMillis);
+    }
 
-            HashMap<String, Object> filter = new HashMap<String, Object>();
-            filter.put("player_uuid", key);
+    private boolean isWritePending(UUID uuid) {
+        return playTimeWriter != null && playTimeWriter.isPending(uuid);
+    }
 
-            try {
-                Database.get().update(dataAccess, filter);
-            } catch (DatabaseWriteException e) {
-                getLogman().warn("Failed to write to database", e);
+    /**
+     * Remembers a player's name, called whenever we see one from Canary.
+     */
+    public void rememberPlayer(UUID uuid, String name) {
+        nameCache.put(uuid, name);
+    }
+
+    /**
+     * Gets a player's name, checking the name cache before asking Canary. Falls back to the UUID if the player is
+     * unknown.
+     */
+    public String getPlayerName(UUID uuid) {
+        String name = nameCache.getName(uuid);
+        if (name != null) {
+            return name;
+        }
+        Player online = getOnlinePlayer(uuid);
+        if (online != null) {
+            name = online.getName();
+        } else {
+            OfflinePlayer offline = this.server.getOfflinePlayer(uuid);
+            name = offline == null ? null : offline.getName();
+        }
+        if (name == null) {
+            return uuid.toString();
+        }
+        nameCache.put(uuid, name);
+        return name;
+    }
+
+    /**
+     * Gets a player's UUID from their name or a UUID string, checking the name cache before asking Canary.
+     * Returns null if there's no such player.
+     */
+    public UUID getPlayerUUID(String name) {
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            // It's a name
+        }
+        UUID uuid = nameCache.getUUID(name);
+        if (uuid != null) {
+            return uuid;
+        }
+        Player online = this.server.getPlayer(name);
+        if (online != null) {
+            uuid = online.getUUID();
+            name = online.getName();
+        } else {
+            OfflinePlayer offline = this.server.getOfflinePlayer(name);
+            if (offline != null && offline.getUUID() != null) {
+                uuid = offline.getUUID();
+                name = offline.getName() == null ? name : offline.getName();
             }
         }
+        if (uuid != null) {
+            nameCache.put(uuid, name);
+        }
+        return uuid;
+    }
+
+    public PlayerNameCache getNameCache() {
+        return this.nameCache;
+    }
+
+    public PlayTimeStats getStats() {
+        return this.stats;
+    }
+
+    public int getOnlineSessionCount() {
+        int online = 0;
+        for (PlayerSession session : this.sessions.values()) {
+            if (session.isOnline()) {
+                online++;
+            }
+        }
+        return online;
+    }
+
+    public int getDirtySessionCount() {
+        return this.dirty.size();
+    }
+
+    public int getWriteQueueSize() {
+        PlayTimeWriter writer = this.playTimeWriter;
+        return writer == null ? 0 : writer.size();
+    }
+
+    private void registerStats() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(PlayTimeStats.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // Left over from before a plugin reload
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this.stats, name);
+        } catch (JMException e) {
+            getLogman().warn("Failed to register stats with JMX", e);
+        }
+    }
+
+    private void unregisterStats() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(PlayTimeStats.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            getLogman().warn("Failed to unregister stats from JMX", e);
+        }
+    }
+
+    public AuditLog getAuditLog() {
+        return this.auditLog;
+    }
+
+    /**
+     * Writes a line to the audit log. Does nothing while the log isn't open, which is before enabling, after
+     * disabling and whenever the plugin was opened without one.
+     */
+    public void audit(String message) {
+        AuditLog log = this.auditLog;
+        if (log != null) {
+            log.log(message);
+        }
     }
 
     public File getDataFolder() {
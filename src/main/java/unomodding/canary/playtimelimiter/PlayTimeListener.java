@@ -6,17 +6,19 @@
  */
 package unomodding.canary.playtimelimiter;
 
-import java.io.File;
-
+import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.chat.Colors;
 import net.canarymod.chat.TextFormat;
 import net.canarymod.hook.HookHandler;
+import net.canarymod.hook.command.ConsoleCommandHook;
+import net.canarymod.hook.command.PlayerCommandHook;
 import net.canarymod.hook.player.ConnectionHook;
 import net.canarymod.hook.player.DisconnectionHook;
+import net.canarymod.hook.player.PreConnectionHook;
 import net.canarymod.hook.system.ServerShutdownHook;
 import net.canarymod.plugin.PluginListener;
-import unomodding.canary.playtimelimiter.utils.FileUtils;
-import unomodding.canary.playtimelimiter.utils.Timestamper;
+import unomodding.canary.playtimelimiter.api.PlayTimeExpiredHook;
+import unomodding.canary.playtimelimiter.api.PlayTimeSnapshot;
 
 public class PlayTimeListener implements PluginListener {
     private final PlayTimeLimiter plugin;
@@ -27,34 +29,73 @@ public class PlayTimeListener implements PluginListener {
 
     @HookHandler
     public void onSeverShutdown(ServerShutdownHook hook) {
-        this.plugin.savePlayTime(true);
         // Force save playtime when server is shut down
+        this.plugin.saveOnShutdown();
+    }
+
+    @HookHandler
+    public void onPlayerCommand(PlayerCommandHook hook) {
+        // Group and permission changes can change which quota applies
+        if (hook.getCommand().length > 0) {
+            this.plugin.onCommand(hook.getCommand()[0]);
+        }
+    }
+
+    @HookHandler
+    public void onConsoleCommand(ConsoleCommandHook hook) {
+        String[] command = hook.getCommand().trim().split(" ");
+        this.plugin.onCommand(command[0]);
+    }
+
+    @HookHandler
+    public void onPreConnection(PreConnectionHook hook) {
+        if (!this.plugin.hasStarted() || hook.getUUID() == null) {
+            return;
+        }
+        this.plugin.rememberPlayer(hook.getUUID(), hook.getName());
+        this.plugin.prefetchPlayer(hook.getUUID());
+        // The lookup carries on while they log in. If it has already finished (or preLoginWaitMillis gives it time
+        // to) players who are out of time are turned away before joining a world, otherwise the join does it.
+        // Without a Player their group quota can't be worked out here, so if we don't already know it leave it to
+        // the join as well.
+        if (this.plugin.awaitPrefetch(hook.getUUID(), this.plugin.getSettings().preLoginWaitMillis)
+                && this.plugin.isPolicyKnown(hook.getUUID()) && this.plugin.isOutOfPlayTime(hook.getUUID())) {
+            this.plugin.clearPrefetch(hook.getUUID());
+            this.plugin.audit(hook.getName() + " was refused for exceeding play time");
+            hook.setKickReason(this.plugin.getKickMessage(hook.getUUID()));
+        }
     }
 
     @HookHandler
     public void onPlayerJoin(ConnectionHook hook) {
-        this.plugin.loadPlayTime(hook.getPlayer());
-        FileUtils.appendStringToFile(new File(this.plugin.getDataFolder(), "playtime.log"),
-                String.format("[%s] %s logged in", Timestamper.now(), hook.getPlayer().getName()));
-        if (this.plugin.getTimeAllowedInSeconds(hook.getPlayer()) <= 0) {
-            FileUtils.appendStringToFile(new File(this.plugin.getDataFolder(), "playtime.log"), String.format(
-                    "[%s] %s was kicked for exceeding play time", Timestamper.now(), hook.getPlayer().getName()));
-            hook.getPlayer().kick(
-                    "You have exceeded the time allowed to play! Come back in "
-                            + this.plugin.secondsToDaysHoursSecondsString(this.plugin.secondsUntilNextDay()) + "!");
-        } else {
-            this.plugin.setPlayerLoggedIn(hook.getPlayer());
+        Player player = hook.getPlayer();
+        this.plugin.rememberPlayer(player.getUUID(), player.getName());
+        // Usually already done by the prefetch started in onPreConnection. The read has to finish before they can
+        // play anyway, so wait for that one rather than starting another. If there wasn't one loadPlayTime reads it.
+        this.plugin.awaitPrefetch(player.getUUID(), Long.MAX_VALUE);
+        this.plugin.clearPrefetch(player.getUUID());
+        this.plugin.loadPlayTime(player);
+        this.plugin.resolvePolicy(player);
+        this.plugin.audit(player.getName() + " logged in");
+        if (this.plugin.isOutOfPlayTime(player.getUUID())) {
+            PlayTimeSnapshot snapshot = this.plugin.getAPI().getSnapshot(player.getUUID());
+            if (snapshot != null) {
+                new PlayTimeExpiredHook(player, snapshot).call();
+            }
+            this.plugin.audit(player.getName() + " was kicked for exceeding play time");
+            player.kick(this.plugin.getKickMessage(player.getUUID()));
+            return;
         }
-        hook.getPlayer().message(
-                "You have " + Colors.GREEN
-                        + plugin.secondsToDaysHoursSecondsString(plugin.getTimeAllowedInSeconds(hook.getPlayer()))
-                        + TextFormat.RESET + " of playtime left!");
+        this.plugin.setPlayerLoggedIn(player);
+        player.message("You have " + Colors.GREEN
+                + plugin.secondsToDaysHoursSecondsString(plugin.getTimeAllowedInSeconds(player)) + TextFormat.RESET
+                + " of playtime left!");
     }
 
     @HookHandler
     public void onPlayerQuit(DisconnectionHook hook) {
-        FileUtils.appendStringToFile(new File(this.plugin.getDataFolder(), "playtime.log"),
-                String.format("[%s] %s logged out", Timestamper.now(), hook.getPlayer().getName()));
+        this.plugin.audit(hook.getPlayer().getName() + " logged out");
         this.plugin.setPlayerLoggedOut(hook.getPlayer());
+        this.plugin.clearPrefetch(hook.getPlayer().getUUID());
     }
 }
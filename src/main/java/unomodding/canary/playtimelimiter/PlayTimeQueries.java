@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.canarymod.Canary;
+import net.canarymod.api.entity.living.humanoid.Player;
+import unomodding.canary.playtimelimiter.api.PlayTimeAPI;
+import unomodding.canary.playtimelimiter.api.PlayTimeSnapshot;
+
+/**
+ * Holds the latest snapshot of every player in memory for {@link PlayTimeAPI}. The plugin publishes a new
+ * snapshot whenever a session changes, readers only ever do a map lookup.
+ */
+class PlayTimeQueries implements PlayTimeAPI {
+    private final PlayTimeLimiter plugin;
+    private final ConcurrentMap<UUID, PlayTimeSnapshot> snapshots = new ConcurrentHashMap<UUID, PlayTimeSnapshot>();
+
+    PlayTimeQueries(PlayTimeLimiter plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean hasStarted() {
+        return plugin.hasStarted();
+    }
+
+    public PlayTimeSnapshot getSnapshot(UUID uuid) {
+        return snapshots.get(uuid);
+    }
+
+    public List<PlayTimeSnapshot> getOnlineSnapshots() {
+        List<PlayTimeSnapshot> online = new ArrayList<PlayTimeSnapshot>();
+        for (Player player : Canary.getServer().getPlayerList()) {
+            PlayTimeSnapshot snapshot = snapshots.get(player.getUUID());
+            if (snapshot != null) {
+                online.add(snapshot);
+            }
+        }
+        return online;
+    }
+
+    void publish(PlayTimeSnapshot snapshot) {
+        snapshots.put(snapshot.getUUID(), snapshot);
+    }
+
+    void remove(UUID uuid) {
+        snapshots.remove(uuid);
+    }
+}
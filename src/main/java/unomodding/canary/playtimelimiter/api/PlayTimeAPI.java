@@ -0,0 +1,33 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.api;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read only view of playtime for other plugins, get it with {@code PlayTimeLimiter.getAPI()}. Reads are served
+ * from immutable {@link PlayTimeSnapshot}s that are replaced whenever a player's state changes, so they never
+ * lock and are safe from any thread. To react to changes without polling, listen for {@link PlayTimeSessionStartHook},
+ * {@link PlayTimeWarningHook}, {@link PlayTimeExpiredHook} and {@link PlayTimeQuotaChangeHook}.
+ */
+public interface PlayTimeAPI {
+    /**
+     * Returns true if playtime has been started.
+     */
+    boolean hasStarted();
+
+    /**
+     * Gets the latest snapshot of a player, or null if they haven't been loaded.
+     */
+    PlayTimeSnapshot getSnapshot(UUID uuid);
+
+    /**
+     * Gets the latest snapshot of every online player.
+     */
+    List<PlayTimeSnapshot> getOnlineSnapshots();
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.api;
+
+import net.canarymod.api.entity.living.humanoid.Player;
+import net.canarymod.hook.Hook;
+
+/**
+ * Called when a player has run out of time or their play window has closed, just before they're kicked.
+ */
+public final class PlayTimeExpiredHook extends Hook {
+    private final Player player;
+    private final PlayTimeSnapshot snapshot;
+
+    public PlayTimeExpiredHook(Player player, PlayTimeSnapshot snapshot) {
+        this.player = player;
+        this.snapshot = snapshot;
+    }
+
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    public PlayTimeSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+}
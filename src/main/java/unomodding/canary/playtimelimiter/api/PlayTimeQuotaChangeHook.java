@@ -0,0 +1,41 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.api;
+
+import net.canarymod.api.entity.living.humanoid.Player;
+import net.canarymod.hook.Hook;
+
+/**
+ * Called when an online player moves onto a different quota, usually because their groups changed.
+ */
+public final class PlayTimeQuotaChangeHook extends Hook {
+    private final Player player;
+    private final PlayTimeSnapshot snapshot;
+    private final String oldQuota;
+
+    public PlayTimeQuotaChangeHook(Player player, PlayTimeSnapshot snapshot, String oldQuota) {
+        this.player = player;
+        this.snapshot = snapshot;
+        this.oldQuota = oldQuota;
+    }
+
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    public PlayTimeSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    public String getOldQuota() {
+        return this.oldQuota;
+    }
+
+    public String getNewQuota() {
+        return this.snapshot.getQuotaName();
+    }
+}
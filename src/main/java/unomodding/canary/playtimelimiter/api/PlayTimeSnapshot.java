@@ -0,0 +1,98 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.api;
+
+import java.util.UUID;
+
+/**
+ * A player's playtime as of their last change. Nothing in here changes, time played while counting is worked out
+ * from when counting started, so a snapshot stays accurate until the player's state changes again.
+ */
+public final class PlayTimeSnapshot {
+    private final UUID uuid;
+    private final int timePlayed;
+    private final int countingSince;
+    private final boolean online;
+    private final boolean limited;
+    private final String quotaName;
+    private final int timeAllowed;
+    private final long closesAt;
+
+    /**
+     * @param timeAllowed the player's total allowance when the snapshot was taken, {@link Integer#MAX_VALUE} if
+     *            their quota is unlimited
+     * @param closesAt when the play window open at the time closes, {@link Long#MAX_VALUE} if it never does
+     */
+    public PlayTimeSnapshot(UUID uuid, int timePlayed, int countingSince, boolean online, boolean limited,
+            String quotaName, int timeAllowed, long closesAt) {
+        this.uuid = uuid;
+        this.timePlayed = timePlayed;
+        this.countingSince = countingSince;
+        this.online = online;
+        this.limited = limited;
+        this.quotaName = quotaName;
+        this.timeAllowed = timeAllowed;
+        this.closesAt = closesAt;
+    }
+
+    public UUID getUUID() {
+        return this.uuid;
+    }
+
+    public boolean isOnline() {
+        return this.online;
+    }
+
+    /**
+     * Returns true if the player's time is limited, false if they're exempt.
+     */
+    public boolean isLimited() {
+        return this.limited;
+    }
+
+    /**
+     * Returns true if time is being counted, false if the player is offline, idle or exempt.
+     */
+    public boolean isCounting() {
+        return this.countingSince != 0;
+    }
+
+    /**
+     * Gets the name of the quota the player is on, "default" unless a group quota applies.
+     */
+    public String getQuotaName() {
+        return this.quotaName;
+    }
+
+    public int getTimePlayed() {
+        return getTimePlayed(System.currentTimeMillis() / 1000);
+    }
+
+    public int getTimePlayed(long now) {
+        if (this.countingSince == 0) {
+            return this.timePlayed;
+        }
+        return this.timePlayed + (int) Math.max(0, now - this.countingSince);
+    }
+
+    /**
+     * Gets how long the player can keep playing, counting both their quota and when the current play window
+     * closes. {@link Integer#MAX_VALUE} if they aren't limited. Both are as of when the snapshot was taken, so a
+     * new day's allowance only shows up once the player's snapshot is next replaced.
+     */
+    public int getTimeLeft() {
+        return getTimeLeft(System.currentTimeMillis() / 1000);
+    }
+
+    public int getTimeLeft(long now) {
+        if (!this.limited || this.timeAllowed == Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        int untilClosed = (int) Math.min(Integer.MAX_VALUE, Math.max(0, this.closesAt - now));
+        return Math.min(this.timeAllowed - getTimePlayed(now), untilClosed);
+    }
+}
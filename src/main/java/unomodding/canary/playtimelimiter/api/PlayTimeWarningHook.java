@@ -0,0 +1,40 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.api;
+
+import net.canarymod.api.entity.living.humanoid.Player;
+import net.canarymod.hook.Hook;
+
+/**
+ * Called when a player is warned that they're about to run out of time.
+ */
+public final class PlayTimeWarningHook extends Hook {
+    private final Player player;
+    private final PlayTimeSnapshot snapshot;
+    private final int threshold;
+
+    public PlayTimeWarningHook(Player player, PlayTimeSnapshot snapshot, int threshold) {
+        this.player = player;
+        this.snapshot = snapshot;
+        this.threshold = threshold;
+    }
+
+    public Player getPlayer() {
+        return this.player;
+    }
+
+    public PlayTimeSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Gets which warning this is, the player has less than this many seconds left.
+     */
+    public int getThreshold() {
+        return this.threshold;
+    }
+}
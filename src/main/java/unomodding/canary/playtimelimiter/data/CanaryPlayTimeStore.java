@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import net.canarymod.database.DataAccess;
+import net.canarymod.database.Database;
+import net.canarymod.database.exceptions.DatabaseReadException;
+import net.canarymod.database.exceptions.DatabaseWriteException;
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+
+/**
+ * Stores records in the "playtime" table of the server's Canary database.
+ */
+public class CanaryPlayTimeStore implements PlayTimeStore {
+    public void open() throws PlayTimeStoreException {
+        // Adds the blacklist column and player_uuid index to tables created by older versions
+        try {
+            Database.get().updateSchema(new PlayTimeDataAccess());
+        } catch (DatabaseWriteException e) {
+            throw new PlayTimeStoreException("Failed to update the playtime table", e);
+        }
+    }
+
+    public PlayTimeRecord load(UUID uuid) throws PlayTimeStoreException {
+        PlayTimeDataAccess dataAccess = new PlayTimeDataAccess();
+        try {
+            Database.get().load(dataAccess, filter(uuid.toString()));
+        } catch (DatabaseReadException e) {
+            throw new PlayTimeStoreException("Failed to read from database", e);
+        }
+        if (!dataAccess.hasData()) {
+            return null;
+        }
+        return new PlayTimeRecord(uuid, dataAccess.playtime, dataAccess.blacklisted);
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) throws PlayTimeStoreException {
+        // Canary filters only match single values, so this is one read per player
+        Map<UUID, PlayTimeRecord> records = new LinkedHashMap<UUID, PlayTimeRecord>();
+        for (UUID uuid : uuids) {
+            PlayTimeRecord record = load(uuid);
+            if (record != null) {
+                records.put(uuid, record);
+            }
+        }
+        return records;
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll() throws PlayTimeStoreException {
+        List<DataAccess> rows = new ArrayList<DataAccess>();
+        try {
+            Database.get().loadAll(new PlayTimeDataAccess(), rows, new HashMap<String, Object>());
+        } catch (DatabaseReadException e) {
+            throw new PlayTimeStoreException("Failed to read from database", e);
+        }
+        Map<UUID, PlayTimeRecord> records = new LinkedHashMap<UUID, PlayTimeRecord>(rows.size());
+        for (DataAccess row : rows) {
+            PlayTimeDataAccess dataAccess = (PlayTimeDataAccess) row;
+            try {
+                UUID uuid = UUID.fromString(dataAccess.uuid);
+                records.put(uuid, new PlayTimeRecord(uuid, dataAccess.playtime, dataAccess.blacklisted));
+            } catch (IllegalArgumentException e) {
+                // Not a player we can do anything with
+            }
+        }
+        return records;
+    }
+
+    public void saveAll(Collection<PlayTimeRecord> records) throws PlayTimeStoreException {
+        DatabaseWriteException failure = null;
+        for (PlayTimeRecord record : records) {
+            PlayTimeDataAccess dataAccess = new PlayTimeDataAccess();
+            dataAccess.uuid = record.getUUID().toString();
+            dataAccess.playtime = record.getPlaytime();
+            dataAccess.blacklisted = record.isBlacklisted();
+            try {
+                Database.get().update(dataAccess, filter(dataAccess.uuid));
+            } catch (DatabaseWriteException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw new PlayTimeStoreException("Failed to write to database", failure);
+        }
+    }
+
+    public void close() {
+        // Canary owns the database connection
+    }
+
+    private static HashMap<String, Object> filter(String uuid) {
+        HashMap<String, Object> filter = new HashMap<String, Object>();
+        filter.put("player_uuid", uuid);
+        return filter;
+    }
+}
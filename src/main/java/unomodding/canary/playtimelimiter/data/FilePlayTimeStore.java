@@ -0,0 +1,91 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+
+/**
+ * Stores records in local files using a {@link PlayTimeJournal}. Writes are appended to the journal and the
+ * journal is folded into the memory-mapped snapshot once it holds {@code compactAfter} records. Every record is
+ * also kept in memory to serve reads, so maxCachedPlayers doesn't bound this store; use a database for servers
+ * with more players than that can hold.
+ */
+public class FilePlayTimeStore implements PlayTimeStore {
+    private final PlayTimeJournal journal;
+    private final int compactAfter;
+    private final Map<UUID, PlayTimeRecord> records = new ConcurrentHashMap<UUID, PlayTimeRecord>();
+    private int appended = 0;
+
+    public FilePlayTimeStore(File folder, boolean sync, int compactAfter) {
+        this.journal = new PlayTimeJournal(folder, "store", sync);
+        this.compactAfter = Math.max(1, compactAfter);
+    }
+
+    public void open() throws PlayTimeStoreException {
+        try {
+            journal.open();
+            for (Map.Entry<UUID, PlayTimeJournal.Entry> entry : journal.readAll().entrySet()) {
+                records.put(entry.getKey(), new PlayTimeRecord(entry.getKey(), entry.getValue().playtime,
+                        entry.getValue().blacklisted));
+            }
+        } catch (IOException e) {
+            throw new PlayTimeStoreException("Failed to open playtime store", e);
+        }
+    }
+
+    public PlayTimeRecord load(UUID uuid) {
+        return records.get(uuid);
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) {
+        Map<UUID, PlayTimeRecord> found = new LinkedHashMap<UUID, PlayTimeRecord>();
+        for (UUID uuid : uuids) {
+            PlayTimeRecord record = records.get(uuid);
+            if (record != null) {
+                found.put(uuid, record);
+            }
+        }
+        return found;
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll() {
+        return new LinkedHashMap<UUID, PlayTimeRecord>(records);
+    }
+
+    public synchronized void saveAll(Collection<PlayTimeRecord> records) throws PlayTimeStoreException {
+        try {
+            for (PlayTimeRecord record : records) {
+                journal.append(record.getUUID(), record.getPlaytime(), record.isBlacklisted());
+                this.records.put(record.getUUID(), record);
+            }
+            appended += records.size();
+            if (appended >= compactAfter) {
+                journal.compact(journal.mark());
+                appended = 0;
+            }
+        } catch (IOException e) {
+            throw new PlayTimeStoreException("Failed to write to playtime store", e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            journal.compact(journal.mark());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal.close();
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+import unomodding.canary.playtimelimiter.utils.PlayTimeStats;
+
+/**
+ * Times every read and write made to another store and counts the ones that fail.
+ */
+public class InstrumentedPlayTimeStore implements PlayTimeStore {
+    private final PlayTimeStore store;
+    private final PlayTimeStats stats;
+
+    public InstrumentedPlayTimeStore(PlayTimeStore store, PlayTimeStats stats) {
+        this.store = store;
+        this.stats = stats;
+    }
+
+    public void open() throws PlayTimeStoreException {
+        store.open();
+    }
+
+    public PlayTimeRecord load(UUID uuid) throws PlayTimeStoreException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            PlayTimeRecord record = store.load(uuid);
+            failed = false;
+            return record;
+        } finally {
+            stats.recordStoreRead(System.nanoTime() - start, failed);
+        }
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) throws PlayTimeStoreException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Map<UUID, PlayTimeRecord> records = store.loadAll(uuids);
+            failed = false;
+            return records;
+        } finally {
+            stats.recordStoreRead(System.nanoTime() - start, failed);
+        }
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll() throws PlayTimeStoreException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Map<UUID, PlayTimeRecord> records = store.loadAll();
+            failed = false;
+            return records;
+        } finally {
+            stats.recordStoreRead(System.nanoTime() - start, failed);
+        }
+    }
+
+    public void saveAll(Collection<PlayTimeRecord> records) throws PlayTimeStoreException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            store.saveAll(records);
+            failed = false;
+        } finally {
+            stats.recordStoreWrite(System.nanoTime() - start, failed);
+        }
+    }
+
+    public void close() {
+        store.close();
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps records in memory only, nothing survives a restart. Useful for testing and benchmarking.
+ */
+public class MemoryPlayTimeStore implements PlayTimeStore {
+    private final Map<UUID, PlayTimeRecord> records = new ConcurrentHashMap<UUID, PlayTimeRecord>();
+
+    public void open() {
+    }
+
+    public PlayTimeRecord load(UUID uuid) {
+        return records.get(uuid);
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) {
+        Map<UUID, PlayTimeRecord> found = new LinkedHashMap<UUID, PlayTimeRecord>();
+        for (UUID uuid : uuids) {
+            PlayTimeRecord record = records.get(uuid);
+            if (record != null) {
+                found.put(uuid, record);
+            }
+        }
+        return found;
+    }
+
+    public Map<UUID, PlayTimeRecord> loadAll() {
+        return new LinkedHashMap<UUID, PlayTimeRecord>(records);
+    }
+
+    public void saveAll(Collection<PlayTimeRecord> records) {
+        for (PlayTimeRecord record : records) {
+            this.records.put(record.getUUID(), record);
+        }
+    }
+
+    public void close() {
+    }
+}
@@ -7,6 +7,7 @@
 package unomodding.canary.playtimelimiter.data;
 
 import net.canarymod.database.Column;
+import net.canarymod.database.Column.ColumnType;
 import net.canarymod.database.Column.DataType;
 import net.canarymod.database.DataAccess;
 
@@ -15,12 +16,15 @@ public class PlayTimeDataAccess extends DataAccess {
         super("playtime");
     }
 
-    @Column(columnName = "player_uuid", dataType = DataType.STRING)
+    @Column(columnName = "player_uuid", dataType = DataType.STRING, columnType = ColumnType.UNIQUE)
     public String uuid;
 
     @Column(columnName = "player_playtime", dataType = DataType.INTEGER)
     public int playtime;
 
+    @Column(columnName = "player_blacklisted", dataType = DataType.BOOLEAN)
+    public boolean blacklisted;
+
     @Override
     public DataAccess getInstance() {
         return new PlayTimeDataAccess();
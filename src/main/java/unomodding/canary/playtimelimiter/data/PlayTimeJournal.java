@@ -0,0 +1,309 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Local crash-safe copy of player state. Every change is appended to playtime.journal as a fixed size record
+ * holding the player's full state, so replaying is idempotent and the last record for a player wins. Compacting
+ * folds the journal into playtime.snapshot, which is written through a memory-mapped file.
+ */
+public class PlayTimeJournal {
+    private static final int RECORD_SIZE = 8 + 8 + 4 + 1 + 4;
+    private static final int SNAPSHOT_MAGIC = 0x50544c53;
+
+    private final File journalFile;
+    private final File tempFile;
+    private final File snapshotFile;
+    private final boolean sync;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private RandomAccessFile journal;
+    private FileChannel channel;
+    private int skipped;
+
+    public PlayTimeJournal(File folder, boolean sync) {
+        this(folder, "playtime", sync);
+    }
+
+    public PlayTimeJournal(File folder, String name, boolean sync) {
+        this.journalFile = new File(folder, name + ".journal");
+        this.tempFile = new File(folder, name + ".journal.tmp");
+        this.snapshotFile = new File(folder, name + ".snapshot");
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the journal for appending and returns the records written since the last compaction. Records that fail
+     * their checksum are skipped, see {@link #getSkippedRecords()}.
+     */
+    public synchronized Map<UUID, Entry> open() throws IOException {
+        if (!journalFile.getParentFile().exists()) {
+            journalFile.getParentFile().mkdirs();
+        }
+        if (tempFile.exists()) {
+            // Left by a crash while trimming. If the journal was already removed (or recreated empty) the copy is
+            // the one to keep, otherwise the journal was never replaced and still holds everything.
+            if (!journalFile.exists() || journalFile.length() == 0) {
+                journalFile.delete();
+                if (!tempFile.renameTo(journalFile)) {
+                    throw new IOException("Couldn't restore playtime journal from " + tempFile);
+                }
+            } else {
+                tempFile.delete();
+            }
+        }
+        openChannel();
+
+        Map<UUID, Entry> entries = new LinkedHashMap<UUID, Entry>();
+        skipped = 0;
+        long whole = channel.size() - channel.size() % RECORD_SIZE;
+        replay(0, whole, entries);
+        if (whole < channel.size()) {
+            // Drop a record torn by a crash mid-write, it can only be the last one
+            channel.truncate(whole);
+        }
+        channel.position(whole);
+        return entries;
+    }
+
+    /**
+     * Gets how many records failed their checksum when the journal was opened. They're skipped rather than
+     * stopping the replay, so a single bad record doesn't lose the ones after it.
+     */
+    public synchronized int getSkippedRecords() {
+        return skipped;
+    }
+
+    /**
+     * Reads the snapshot and the whole journal, giving the latest known state of every player.
+     */
+    public synchronized Map<UUID, Entry> readAll() throws IOException {
+        Map<UUID, Entry> entries = readSnapshot();
+        if (channel != null) {
+            replay(0, channel.size(), entries);
+        }
+        return entries;
+    }
+
+    public synchronized void append(UUID uuid, int playtime, boolean blacklisted) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.clear();
+        putRecord(buffer, uuid, playtime, blacklisted);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Gets the current end of the journal, for use with {@link #compact(long)}.
+     */
+    public synchronized long mark() throws IOException {
+        return channel == null ? 0 : channel.position();
+    }
+
+    /**
+     * Folds everything in the journal before {@code mark} into the snapshot. Records after the mark are kept in
+     * the journal.
+     */
+    public synchronized void compact(long mark) throws IOException {
+        if (channel == null || mark <= 0) {
+            return;
+        }
+        Map<UUID, Entry> entries = readSnapshot();
+        replay(0, mark, entries);
+        writeSnapshot(entries);
+
+        // Should we crash before truncating, replaying records that are already in the snapshot does no harm
+        dropBefore(mark);
+    }
+
+    /**
+     * Throws away everything in the journal before {@code mark} without keeping it anywhere, for when it's already
+     * safe elsewhere. Records after the mark are kept in the journal.
+     */
+    public synchronized void discard(long mark) throws IOException {
+        if (channel == null || mark <= 0) {
+            return;
+        }
+        dropBefore(mark);
+    }
+
+    /**
+     * Replaces the journal with a copy holding only what was appended after {@code mark}. The copy is written and
+     * forced to disk before it's renamed over the journal, so a crash part way through leaves one or the other.
+     */
+    private void dropBefore(long mark) throws IOException {
+        long end = channel.position();
+        ByteBuffer tail = ByteBuffer.allocate((int) (end - mark));
+        while (tail.hasRemaining() && channel.read(tail, mark + tail.position()) >= 0) {
+            // Keep reading until we have the whole tail
+        }
+        tail.flip();
+
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.setLength(0);
+            FileChannel copy = file.getChannel();
+            while (tail.hasRemaining()) {
+                copy.write(tail);
+            }
+            copy.force(false);
+        } finally {
+            file.close();
+        }
+
+        journal.close();
+        // Renaming over the journal is atomic where the platform allows it, otherwise open() finishes the job
+        boolean replaced = tempFile.renameTo(journalFile)
+                || (journalFile.delete() && tempFile.renameTo(journalFile));
+        openChannel();
+        channel.position(channel.size());
+        if (!replaced) {
+            throw new IOException("Couldn't replace playtime journal " + journalFile);
+        }
+    }
+
+    private void openChannel() throws IOException {
+        journal = new RandomAccessFile(journalFile, "rw");
+        channel = journal.getChannel();
+    }
+
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                channel.force(false);
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journal = null;
+            channel = null;
+        }
+    }
+
+    private void replay(long from, long to, Map<UUID, Entry> entries) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = from;
+        while (position + RECORD_SIZE <= to) {
+            record.clear();
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    return;
+                }
+            }
+            record.flip();
+            if (!readRecord(record, entries)) {
+                skipped++;
+            }
+            position += RECORD_SIZE;
+        }
+    }
+
+    private Map<UUID, Entry> readSnapshot() throws IOException {
+        Map<UUID, Entry> entries = new LinkedHashMap<UUID, Entry>();
+        if (!snapshotFile.exists()) {
+            return entries;
+        }
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+        try {
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (map.remaining() < 8 || map.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Invalid playtime snapshot " + snapshotFile);
+            }
+            int count = map.getInt();
+            for (int i = 0; i < count; i++) {
+                if (!readRecord(map, entries)) {
+                    throw new IOException("Corrupt record in playtime snapshot " + snapshotFile);
+                }
+            }
+        } finally {
+            file.close();
+        }
+        return entries;
+    }
+
+    private void writeSnapshot(Map<UUID, Entry> entries) throws IOException {
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temp, "rw");
+        try {
+            long size = 8 + (long) entries.size() * RECORD_SIZE;
+            file.setLength(size);
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(SNAPSHOT_MAGIC);
+            map.putInt(entries.size());
+            for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+                putRecord(map, entry.getKey(), entry.getValue().playtime, entry.getValue().blacklisted);
+            }
+            map.force();
+        } finally {
+            file.close();
+        }
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            throw new IOException("Couldn't replace playtime snapshot " + snapshotFile);
+        }
+        if (!temp.renameTo(snapshotFile)) {
+            throw new IOException("Couldn't replace playtime snapshot " + snapshotFile);
+        }
+    }
+
+    private void putRecord(ByteBuffer to, UUID uuid, int playtime, boolean blacklisted) {
+        int start = to.position();
+        to.putLong(uuid.getMostSignificantBits());
+        to.putLong(uuid.getLeastSignificantBits());
+        to.putInt(playtime);
+        to.put((byte) (blacklisted ? 1 : 0));
+        to.putInt(checksum(to, start));
+    }
+
+    private boolean readRecord(ByteBuffer from, Map<UUID, Entry> entries) {
+        int start = from.position();
+        long most = from.getLong();
+        long least = from.getLong();
+        int playtime = from.getInt();
+        boolean blacklisted = from.get() != 0;
+        if (from.getInt() != checksum(from, start)) {
+            return false;
+        }
+        entries.put(new UUID(most, least), new Entry(playtime, blacklisted));
+        return true;
+    }
+
+    private int checksum(ByteBuffer buffer, int start) {
+        crc.reset();
+        for (int i = start; i < start + RECORD_SIZE - 4; i++) {
+            crc.update(buffer.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    public static final class Entry {
+        public final int playtime;
+        public final boolean blacklisted;
+
+        public Entry(int playtime, boolean blacklisted) {
+            this.playtime = playtime;
+            this.blacklisted = blacklisted;
+        }
+    }
+}
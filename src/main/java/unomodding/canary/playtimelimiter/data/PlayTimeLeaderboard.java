@@ -0,0 +1,220 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Every known player ordered by stored playtime, most first. Backed by a treap where each node knows the size of
+ * its subtree, so updates, ranks and counts are all O(log n) and the top n is O(log n + n).
+ */
+public class PlayTimeLeaderboard {
+    private final Map<UUID, Integer> values = new HashMap<UUID, Integer>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Sets a player's stored playtime, adding them if they aren't on the board yet.
+     */
+    public synchronized void update(UUID uuid, int playtime) {
+        Integer old = values.put(uuid, playtime);
+        if (old != null) {
+            if (old == playtime) {
+                return;
+            }
+            root = remove(root, old, uuid);
+        }
+        root = insert(root, new Node(uuid, playtime, random.nextInt()));
+    }
+
+    /**
+     * Adds a player only if they aren't on the board yet, for filling it in from storage without overwriting
+     * anything newer.
+     */
+    public synchronized void seed(UUID uuid, int playtime) {
+        if (!values.containsKey(uuid)) {
+            update(uuid, playtime);
+        }
+    }
+
+    public synchronized void remove(UUID uuid) {
+        Integer old = values.remove(uuid);
+        if (old != null) {
+            root = remove(root, old, uuid);
+        }
+    }
+
+    /**
+     * Gets a player's stored playtime, or null if they aren't on the board.
+     */
+    public synchronized Integer get(UUID uuid) {
+        return values.get(uuid);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * Counts the players with more than {@code playtime} stored.
+     */
+    public synchronized int countAbove(int playtime) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.playtime > playtime) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the first {@code n} players, most playtime first.
+     */
+    public synchronized List<Entry> top(int n) {
+        List<Entry> top = new ArrayList<Entry>(Math.min(n, values.size()));
+        collect(root, top, n);
+        return top;
+    }
+
+    private void collect(Node node, List<Entry> to, int n) {
+        if (node == null || to.size() >= n) {
+            return;
+        }
+        collect(node.left, to, n);
+        if (to.size() < n) {
+            to.add(new Entry(node.uuid, node.playtime));
+            collect(node.right, to, n);
+        }
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.playtime, added.uuid, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node remove(Node node, int playtime, UUID uuid) {
+        if (node == null) {
+            return null;
+        }
+        int compare = compare(playtime, uuid, node);
+        if (compare < 0) {
+            node.left = remove(node.left, playtime, uuid);
+        } else if (compare > 0) {
+            node.right = remove(node.right, playtime, uuid);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+
+    private static int compare(int playtime, UUID uuid, Node node) {
+        if (playtime != node.playtime) {
+            return playtime > node.playtime ? -1 : 1;
+        }
+        return uuid.compareTo(node.uuid);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final UUID uuid;
+        private final int playtime;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(UUID uuid, int playtime, int priority) {
+            this.uuid = uuid;
+            this.playtime = playtime;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    public static final class Entry implements Comparable<Entry> {
+        public final UUID uuid;
+        public final int playtime;
+
+        public Entry(UUID uuid, int playtime) {
+            this.uuid = uuid;
+            this.playtime = playtime;
+        }
+
+        public int compareTo(Entry other) {
+            if (playtime != other.playtime) {
+                return playtime > other.playtime ? -1 : 1;
+            }
+            return uuid.compareTo(other.uuid);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.UUID;
+
+/**
+ * The stored state of a single player, as read from or written to a {@link PlayTimeStore}.
+ */
+public final class PlayTimeRecord {
+    private final UUID uuid;
+    private final int playtime;
+    private final boolean blacklisted;
+
+    public PlayTimeRecord(UUID uuid, int playtime, boolean blacklisted) {
+        this.uuid = uuid;
+        this.playtime = playtime;
+        this.blacklisted = blacklisted;
+    }
+
+    public UUID getUUID() {
+        return this.uuid;
+    }
+
+    public int getPlaytime() {
+        return this.playtime;
+    }
+
+    public boolean isBlacklisted() {
+        return this.blacklisted;
+    }
+}
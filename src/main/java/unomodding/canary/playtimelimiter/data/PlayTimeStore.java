@@ -0,0 +1,42 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+
+/**
+ * Where player records are persisted. Picked with the "storage" config option.
+ */
+public interface PlayTimeStore {
+    void open() throws PlayTimeStoreException;
+
+    /**
+     * Gets the record for a player, or null if they don't have one.
+     */
+    PlayTimeRecord load(UUID uuid) throws PlayTimeStoreException;
+
+    /**
+     * Gets the records for the given players. Players without a record are left out of the result.
+     */
+    Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) throws PlayTimeStoreException;
+
+    /**
+     * Gets every stored record.
+     */
+    Map<UUID, PlayTimeRecord> loadAll() throws PlayTimeStoreException;
+
+    /**
+     * Creates or replaces the given records.
+     */
+    void saveAll(Collection<PlayTimeRecord> records) throws PlayTimeStoreException;
+
+    void close();
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import java.util.UUID;
+
+import unomodding.canary.playtimelimiter.utils.QuotaPolicy;
+
+/**
+ * Everything the plugin keeps in memory for a single player. All access is synchronized on the session, so
+ * callers that need several steps to happen together can also synchronize on it.
+ */
+public class PlayerSession {
+    private static final int[] WARNINGS = { 300, 60, 10 };
+
+    private final UUID uuid;
+    private int timePlayed;
+    private int loggedInAt;
+    private boolean online;
+    private boolean loaded;
+    private boolean blacklisted;
+    private byte seenWarnings;
+    private boolean idle;
+    // Not guarded by the lock, it's only a hint for choosing which sessions to evict
+    private volatile long lastUsed = System.currentTimeMillis();
+    // Not guarded by the lock either, so activity hooks never block. Read by the idle sweep.
+    private volatile int lastActive;
+    // Resolved from the player's groups at login, null until then
+    private volatile QuotaPolicy policy;
+
+    public PlayerSession(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public UUID getUUID() {
+        return this.uuid;
+    }
+
+    public synchronized int getTimePlayed() {
+        return this.timePlayed;
+    }
+
+    public synchronized void setTimePlayed(int timePlayed) {
+        this.timePlayed = timePlayed;
+    }
+
+    public synchronized void addTimePlayed(int seconds) {
+        this.timePlayed += seconds;
+    }
+
+    /**
+     * Fills in the stored state for this player, read from their row in the playtime table. Time counted before the
+     * first load, while their row couldn't be read, is added on top.
+     */
+    public synchronized void load(int timePlayed, boolean blacklisted) {
+        this.timePlayed = this.loaded ? timePlayed : this.timePlayed + timePlayed;
+        this.blacklisted = blacklisted;
+        this.loaded = true;
+    }
+
+    public synchronized boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Gets the stored playtime plus the time played in the current session.
+     */
+    public synchronized int getTimePlayed(int now) {
+        if (this.online && this.loggedInAt != 0) {
+            return this.timePlayed + (now - this.loggedInAt);
+        }
+        return this.timePlayed;
+    }
+
+    public synchronized int getLoggedInAt() {
+        return this.loggedInAt;
+    }
+
+    public synchronized boolean isOnline() {
+        return this.online;
+    }
+
+    /**
+     * Marks the player as online, counting time from {@code loggedInAt} or not at all if it's 0.
+     */
+    public synchronized void logIn(int loggedInAt) {
+        this.online = true;
+        this.loggedInAt = loggedInAt;
+        this.idle = false;
+        this.lastActive = (int) (System.currentTimeMillis() / 1000);
+    }
+
+    public synchronized void logOut() {
+        this.online = false;
+        this.loggedInAt = 0;
+        this.idle = false;
+        this.seenWarnings = 0;
+    }
+
+    /**
+     * Records activity from the player. Called from movement and chat hooks, so it only writes a field.
+     */
+    public void markActive(int now) {
+        if (this.lastActive != now) {
+            this.lastActive = now;
+        }
+    }
+
+    public int getLastActive() {
+        return this.lastActive;
+    }
+
+    /**
+     * Stops counting time for an online player who has gone idle, keeping the time played up to {@code at}.
+     * Returns false if they weren't being counted.
+     */
+    public synchronized boolean pause(int at) {
+        if (!this.online || this.loggedInAt == 0 || this.idle) {
+            return false;
+        }
+        this.timePlayed += Math.max(0, at - this.loggedInAt);
+        this.loggedInAt = 0;
+        this.idle = true;
+        return true;
+    }
+
+    /**
+     * Starts counting time again from {@code at} for a player paused by {@link #pause(int)}.
+     */
+    public synchronized boolean resume(int at) {
+        if (!this.online || !this.idle) {
+            return false;
+        }
+        this.loggedInAt = at;
+        this.idle = false;
+        return true;
+    }
+
+    public synchronized boolean isIdle() {
+        return this.idle;
+    }
+
+    public synchronized boolean isBlacklisted() {
+        return this.blacklisted;
+    }
+
+    public synchronized void setBlacklisted(boolean blacklisted) {
+        this.blacklisted = blacklisted;
+    }
+
+    public synchronized boolean hasSeenWarning(int time) {
+        return (this.seenWarnings & warningBit(time)) != 0;
+    }
+
+    public synchronized void setSeenWarning(int time) {
+        this.seenWarnings |= warningBit(time);
+    }
+
+    public QuotaPolicy getPolicy() {
+        return this.policy;
+    }
+
+    public void setPolicy(QuotaPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Records that the session has just been used, so it's kept over ones that haven't been used in a while.
+     */
+    public void touch() {
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    public long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    private static int warningBit(int time) {
+        for (int i = 0; i < WARNINGS.length; i++) {
+            if (WARNINGS[i] == time) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.exceptions;
+
+public class PlayTimeStoreException extends Exception {
+    private static final long serialVersionUID = 2716307436297218432L;
+
+    public PlayTimeStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
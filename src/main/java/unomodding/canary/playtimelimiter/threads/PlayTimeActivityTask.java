@@ -0,0 +1,21 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.threads;
+
+import unomodding.canary.playtimelimiter.PlayTimeLimiter;
+
+public class PlayTimeActivityTask implements Runnable {
+    private final PlayTimeLimiter plugin;
+
+    public PlayTimeActivityTask(PlayTimeLimiter instance) {
+        this.plugin = instance;
+    }
+
+    public void run() {
+        this.plugin.sweepIdlePlayers(); // Stop counting time for anyone gone idle, start again for anyone back
+    }
+}
@@ -6,55 +6,213 @@
  */
 package unomodding.canary.playtimelimiter.threads;
 
-import java.io.File;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
 
-import net.canarymod.Canary;
 import net.canarymod.api.entity.living.humanoid.Player;
 import net.canarymod.chat.Colors;
 import net.canarymod.chat.TextFormat;
 import unomodding.canary.playtimelimiter.PlayTimeLimiter;
-import unomodding.canary.playtimelimiter.utils.FileUtils;
-import unomodding.canary.playtimelimiter.utils.Timestamper;
+import unomodding.canary.playtimelimiter.api.PlayTimeExpiredHook;
+import unomodding.canary.playtimelimiter.api.PlayTimeSnapshot;
+import unomodding.canary.playtimelimiter.api.PlayTimeWarningHook;
+import unomodding.canary.playtimelimiter.utils.PlayTimeStats;
 
+/**
+ * Kicks and warns players when they cross a playtime threshold. Each online player has a single deadline queued,
+ * for the next warning they haven't seen yet or their expiry, so a run only touches the players whose deadline
+ * has passed. Once a deadline fires the one after it is queued. Deadlines are replaced whenever a player's time
+ * left changes, so the queue never holds more than one per player.
+ */
 public class PlayTimeCheckerTask implements Runnable {
+    private static final int[] WARNINGS = { 300, 60, 10 };
+
     private final PlayTimeLimiter plugin;
+    private final PlayTimeStats stats;
+    private final TreeSet<Deadline> deadlines = new TreeSet<Deadline>();
+    private final Map<UUID, Deadline> queued = new HashMap<UUID, Deadline>();
+    private final Map<UUID, Integer> generations = new HashMap<UUID, Integer>();
 
-    public PlayTimeCheckerTask(PlayTimeLimiter instance) {
+    public PlayTimeCheckerTask(PlayTimeLimiter instance, PlayTimeStats stats) {
         this.plugin = instance;
+        this.stats = stats;
+    }
+
+    /**
+     * Replaces any deadline for the given player based on how much time they have left.
+     */
+    public synchronized void schedule(UUID uuid, int timeLeft) {
+        int generation = nextGeneration(uuid);
+        unqueue(uuid);
+        queueNext(uuid, timeLeft, Integer.MAX_VALUE, generation);
+    }
+
+    /**
+     * Drops the deadline for the given player.
+     */
+    public synchronized void cancel(UUID uuid) {
+        generations.remove(uuid);
+        unqueue(uuid);
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
     }
 
     public void run() {
-        for (Player player : Canary.getServer().getPlayerList()) {
-            if (plugin.hasPlayTime(player)) {
-                int timeLeft = this.plugin.getTimeAllowedInSeconds(player);
-                if (timeLeft <= 0) {
-                    FileUtils.appendStringToFile(
-                            new File(this.plugin.getDataFolder(), "playtime.log"),
-                            String.format("[%s] %s was kicked for exceeding play time", Timestamper.now(),
-                                    player.getName()));
-                    player.kick("You have exceeded the time allowed to play! Come back in "
-                            + this.plugin.secondsToDaysHoursSecondsString(this.plugin.secondsUntilNextDay()) + "!");
-                } else if (timeLeft <= 10 && !this.plugin.hasPlayerSeenMessage(player, 10)) {
-                    player.message(Colors.RED
-                            + "WARNING!"
-                            + TextFormat.RESET
-                            + " You have less than 10 seconds of playtime left! Stop what your doing and prepare to be disconnected!");
-                    this.plugin.sentPlayerWarningMessage(player, 10);
-                } else if (timeLeft <= 60 && timeLeft > 10 && !this.plugin.hasPlayerSeenMessage(player, 60)) {
-                    player.message(Colors.RED
-                            + "WARNING!"
-                            + TextFormat.RESET
-                            + " You have less than 60 seconds of playtime left! Stop what your doing and prepare to be disconnected!");
-                    this.plugin.sentPlayerWarningMessage(player, 60);
-                } else if (timeLeft <= 300 && timeLeft > 60 && !this.plugin.hasPlayerSeenMessage(player, 300)) {
-                    player.message(Colors.RED
-                            + "WARNING!"
-                            + TextFormat.RESET
-                            + " You have less than 5 minutes of playtime left! Stop what your doing and prepare to be disconnected!");
-                    this.plugin.sentPlayerWarningMessage(player, 300);
+        long start = System.nanoTime();
+        check();
+        this.stats.recordCheckerRun(System.nanoTime() - start);
+    }
+
+    private void check() {
+        for (Deadline deadline : takeDue()) {
+            Player player = this.plugin.getOnlinePlayer(deadline.uuid);
+            if (player == null || !plugin.hasPlayTime(player)) {
+                continue;
+            }
+            int timeLeft = this.plugin.getTimeAllowedInSeconds(player);
+            // Null if their playtime couldn't be loaded, in which case the hooks are skipped
+            PlayTimeSnapshot snapshot = this.plugin.getAPI().getSnapshot(deadline.uuid);
+            if (timeLeft > deadline.threshold) {
+                // They've been given more time since this was queued (or a new day started)
+                requeue(deadline, timeLeft);
+                continue;
+            } else if (deadline.threshold == 0) {
+                if (snapshot != null) {
+                    new PlayTimeExpiredHook(player, snapshot).call();
+                }
+                this.plugin.audit(player.getName() + " was kicked for exceeding play time");
+                player.kick(this.plugin.getKickMessage(player.getUUID()));
+            } else if (!this.plugin.hasPlayerSeenMessage(player, deadline.threshold)
+                    && timeLeft > lowerWarning(deadline.threshold)) {
+                player.message(Colors.RED + "WARNING!" + TextFormat.RESET + " You have less than "
+                        + warningString(deadline.threshold)
+                        + " of playtime left! Stop what your doing and prepare to be disconnected!");
+                this.plugin.sentPlayerWarningMessage(player, deadline.threshold);
+                if (snapshot != null) {
+                    new PlayTimeWarningHook(player, snapshot, deadline.threshold).call();
                 }
             }
+            if (deadline.threshold > 0) {
+                next(deadline, timeLeft);
+            }
+        }
+    }
+
+    private synchronized List<Deadline> takeDue() {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        List<Deadline> due = new ArrayList<Deadline>();
+        while (!deadlines.isEmpty() && deadlines.first().time <= now) {
+            Deadline deadline = deadlines.pollFirst();
+            queued.remove(deadline.uuid);
+            due.add(deadline);
+        }
+        return due;
+    }
+
+    /**
+     * Queues the same threshold again for a player who has been given more time since it was queued.
+     */
+    private synchronized void requeue(Deadline deadline, int timeLeft) {
+        if (isCurrent(deadline)) {
+            int now = (int) (System.currentTimeMillis() / 1000);
+            add(new Deadline(now + timeLeft - deadline.threshold, deadline.uuid, deadline.threshold,
+                    deadline.generation));
+        }
+    }
+
+    /**
+     * Queues the threshold after one that has just fired.
+     */
+    private synchronized void next(Deadline deadline, int timeLeft) {
+        if (isCurrent(deadline)) {
+            queueNext(deadline.uuid, timeLeft, deadline.threshold, deadline.generation);
+        }
+    }
+
+    /**
+     * Queues the first warning below {@code below} the player will still see given how much time they have left,
+     * or their expiry if there isn't one.
+     */
+    private void queueNext(UUID uuid, int timeLeft, int below, int generation) {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        for (int i = 0; i < WARNINGS.length; i++) {
+            if (WARNINGS[i] < below && timeLeft > lowerWarning(WARNINGS[i])) {
+                add(new Deadline(now + timeLeft - WARNINGS[i], uuid, WARNINGS[i], generation));
+                return;
+            }
+        }
+        add(new Deadline(now + timeLeft, uuid, 0, generation));
+    }
+
+    /**
+     * Returns true if the player hasn't been rescheduled or cancelled since the deadline was taken, and nothing
+     * else has been queued for them.
+     */
+    private boolean isCurrent(Deadline deadline) {
+        Integer generation = generations.get(deadline.uuid);
+        return generation != null && generation == deadline.generation && !queued.containsKey(deadline.uuid);
+    }
+
+    private void add(Deadline deadline) {
+        deadlines.add(deadline);
+        queued.put(deadline.uuid, deadline);
+    }
+
+    private void unqueue(UUID uuid) {
+        Deadline old = queued.remove(uuid);
+        if (old != null) {
+            deadlines.remove(old);
+        }
+    }
+
+    private int nextGeneration(UUID uuid) {
+        Integer generation = generations.get(uuid);
+        int next = generation == null ? 0 : generation + 1;
+        generations.put(uuid, next);
+        return next;
+    }
+
+    private static int lowerWarning(int threshold) {
+        for (int i = 0; i < WARNINGS.length; i++) {
+            if (WARNINGS[i] == threshold) {
+                return i + 1 < WARNINGS.length ? WARNINGS[i + 1] : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static String warningString(int threshold) {
+        if (threshold % 60 == 0 && threshold > 60) {
+            return (threshold / 60) + " minutes";
+        }
+        return threshold + " seconds";
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        private final int time;
+        private final UUID uuid;
+        private final int threshold;
+        private final int generation;
+
+        private Deadline(int time, UUID uuid, int threshold, int generation) {
+            this.time = time;
+            this.uuid = uuid;
+            this.threshold = threshold;
+            this.generation = generation;
+        }
+
+        public int compareTo(Deadline other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            // Only one deadline is queued per player, so this keeps different players apart
+            return uuid.compareTo(other.uuid);
         }
     }
 }
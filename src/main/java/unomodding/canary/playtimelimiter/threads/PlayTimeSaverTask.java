@@ -18,6 +18,6 @@ public class PlayTimeSaverTask implements Runnable {
     }
 
     public void run() {
-        this.plugin.savePlayTime(); // Save playtime every 10 minutes
+        this.plugin.savePlayTimeAndCompact(); // Flush any changed playtime
     }
 }
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.threads;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import net.canarymod.logger.Logman;
+import unomodding.canary.playtimelimiter.data.PlayTimeRecord;
+import unomodding.canary.playtimelimiter.data.PlayTimeStore;
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+
+/**
+ * Write-behind queue in front of the {@link PlayTimeStore}. Writes are coalesced per player so only the latest
+ * record is written, each pass hands the store everything queued as one batch, and callers block once the queue
+ * holds {@code capacity} pending writes.
+ */
+public class PlayTimeWriter implements Runnable {
+    private static final int SHUTDOWN_CHUNK = 500;
+
+    private final Logman logman;
+    private final PlayTimeStore store;
+    private final int capacity;
+    private final Object lock = new Object();
+    private final Map<UUID, PlayTimeRecord> pending = new LinkedHashMap<UUID, PlayTimeRecord>();
+    private final Map<UUID, PlayTimeRecord> inFlight = new HashMap<UUID, PlayTimeRecord>();
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public PlayTimeWriter(Logman logman, PlayTimeStore store, int capacity) {
+        this.logman = logman;
+        this.store = store;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public void start() {
+        this.running = true;
+        this.thread = new Thread(this, "PlayTimeLimiter-Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void queue(PlayTimeRecord record) {
+        UUID key = record.getUUID();
+        synchronized (lock) {
+            // Back-pressure, wait for the worker to catch up unless this replaces an existing write
+            while (running && pending.size() >= capacity && !pending.containsKey(key)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            pending.remove(key);
+            pending.put(key, record);
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isPending(UUID uuid) {
+        synchronized (lock) {
+            return inFlight.containsKey(uuid) || pending.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Gets the latest record queued or being written for the given player, or null if there isn't one. This is
+     * what the store will hold once the write finishes.
+     */
+    public PlayTimeRecord getPending(UUID uuid) {
+        synchronized (lock) {
+            PlayTimeRecord record = pending.get(uuid);
+            return record != null ? record : inFlight.get(uuid);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for every queued write to finish. Returns true if the queue emptied.
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                try {
+                    lock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public void run() {
+        while (running) {
+            Map<UUID, PlayTimeRecord> batch;
+            synchronized (lock) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                batch = takeBatch();
+            }
+            write(batch);
+        }
+    }
+
+    /**
+     * Stops the worker and writes anything still queued on the calling thread, giving up once
+     * {@code timeoutMillis} has passed. Returns how many players were left unwritten.
+     */
+    public int shutdown(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        // Write in chunks so we can stop part way through if time runs out
+        while (System.currentTimeMillis() < deadline) {
+            Map<UUID, PlayTimeRecord> chunk = new LinkedHashMap<UUID, PlayTimeRecord>();
+            synchronized (lock) {
+                Iterator<Map.Entry<UUID, PlayTimeRecord>> it = pending.entrySet().iterator();
+                while (it.hasNext() && chunk.size() < SHUTDOWN_CHUNK) {
+                    Map.Entry<UUID, PlayTimeRecord> entry = it.next();
+                    chunk.put(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+            }
+            if (chunk.isEmpty()) {
+                break;
+            }
+            try {
+                store.saveAll(chunk.values());
+            } catch (PlayTimeStoreException e) {
+                logman.warn("Failed to write playtime", e);
+                synchronized (lock) {
+                    pending.putAll(chunk);
+                }
+                break;
+            }
+        }
+        synchronized (lock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    private Map<UUID, PlayTimeRecord> takeBatch() {
+        Map<UUID, PlayTimeRecord> batch = new LinkedHashMap<UUID, PlayTimeRecord>(pending);
+        pending.clear();
+        inFlight.putAll(batch);
+        lock.notifyAll();
+        return batch;
+    }
+
+    private void write(Map<UUID, PlayTimeRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean failed = false;
+        try {
+            store.saveAll(batch.values());
+        } catch (PlayTimeStoreException e) {
+            logman.warn("Failed to write playtime", e);
+            failed = true;
+        }
+        synchronized (lock) {
+            inFlight.keySet().removeAll(batch.keySet());
+            // Retry the batch on the next pass, skipping players who have had a newer value queued since. If we're
+            // stopping this puts them back for shutdown to retry, or at least count as unwritten.
+            if (failed) {
+                for (Map.Entry<UUID, PlayTimeRecord> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            lock.notifyAll();
+        }
+        if (failed && running) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
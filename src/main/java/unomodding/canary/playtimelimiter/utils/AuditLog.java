@@ -0,0 +1,181 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps playtime.log open and writes it from a background thread. Lines are buffered in memory and flushed to
+ * disk every {@code flushIntervalMillis} or once {@code flushSize} lines are waiting, whichever comes first.
+ */
+public class AuditLog implements Runnable {
+    private final File file;
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final long flushIntervalMillis;
+    private final int flushSize;
+    private BufferedWriter writer;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public AuditLog(File file, int bufferSize, long flushIntervalMillis, int flushSize) {
+        this.file = file;
+        this.buffer = new ArrayBlockingQueue<Entry>(Math.max(1, bufferSize));
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.flushSize = Math.max(1, flushSize);
+    }
+
+    public synchronized void open() throws IOException {
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+        running = true;
+        thread = new Thread(this, "PlayTimeLimiter-AuditLog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a line for playtime.log, timestamped with the current time.
+     */
+    public void log(String message) {
+        Entry entry = new Entry(System.currentTimeMillis() / 1000, message);
+        if (!buffer.offer(entry)) {
+            // Buffer is full, write out what's waiting on this thread rather than losing lines
+            drain();
+            if (!buffer.offer(entry)) {
+                write(entry);
+            }
+        }
+    }
+
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    public void run() {
+        int unflushed = 0;
+        long lastFlush = System.currentTimeMillis();
+        List<Entry> batch = new ArrayList<Entry>(flushSize);
+        while (running) {
+            try {
+                Entry first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, flushSize - 1);
+                    unflushed += write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (unflushed > 0 && (unflushed >= flushSize || now - lastFlush >= flushIntervalMillis)) {
+                flush();
+                unflushed = 0;
+                lastFlush = now;
+            }
+        }
+    }
+
+    /**
+     * Stops the flusher, writes out everything still buffered and closes playtime.log.
+     */
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        drain();
+        synchronized (this) {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                writer = null;
+            }
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<Entry>(buffer.size());
+        buffer.drainTo(batch);
+        write(batch);
+        flush();
+    }
+
+    private synchronized int write(List<Entry> batch) {
+        if (writer == null) {
+            return 0;
+        }
+        try {
+            for (Entry entry : batch) {
+                writeEntry(entry);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return batch.size();
+    }
+
+    private synchronized void write(Entry entry) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writeEntry(entry);
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        writer.write('[');
+        writer.write(Timestamper.format(entry.timestamp));
+        writer.write("] ");
+        writer.write(entry.message);
+        writer.newLine();
+    }
+
+    private synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Entry {
+        private final long timestamp;
+        private final String message;
+
+        private Entry(long timestamp, String message) {
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+/**
+ * Works out how much playtime has been handed out since playtime started. The allowance only changes once per
+ * day, so the current day is cached and only recalculated when it rolls over. How much each day gives comes from
+ * the {@link PlayTimeSchedule}, based on the day of the week the day starts on.
+ */
+public final class DailyAllowance {
+    public static final int SECONDS_PER_DAY = 86400;
+
+    private final long timeStarted;
+    private final int initialTime;
+    private final PlayTimeSchedule schedule;
+    private final boolean timeTravels;
+    private volatile Day day;
+
+    public DailyAllowance(long timeStarted, int initialTime, int timePerDay, boolean timeTravels) {
+        this(timeStarted, initialTime, PlayTimeSchedule.daily(timePerDay), timeTravels);
+    }
+
+    public DailyAllowance(long timeStarted, int initialTime, PlayTimeSchedule schedule, boolean timeTravels) {
+        this.timeStarted = timeStarted;
+        this.initialTime = initialTime;
+        this.schedule = schedule;
+        this.timeTravels = timeTravels;
+    }
+
+    public int getTimeAllowed(long now) {
+        return getDay(now).allowance;
+    }
+
+    public int secondsUntilNextDay(long now) {
+        return (int) (getDay(now).endsAt - now);
+    }
+
+    private Day getDay(long now) {
+        Day current = this.day;
+        if (current == null || now < current.startsAt || now >= current.endsAt) {
+            current = computeDay(now);
+            this.day = current;
+        }
+        return current;
+    }
+
+    private Day computeDay(long now) {
+        long secondsSince = now - timeStarted;
+        if (secondsSince < 0) {
+            // Playtime hasn't started yet, only the initial time has been given
+            return new Day(Long.MIN_VALUE, timeStarted, initialTime);
+        }
+        long index = secondsSince / SECONDS_PER_DAY;
+        long startsAt = timeStarted + index * SECONDS_PER_DAY;
+        int allowance;
+        if (timeTravels) {
+            // Each day including the first adds the daily time on top of the initial time
+            allowance = (int) (initialTime + schedule.getTimeForDays(schedule.dayOfWeek(timeStarted), index + 1));
+        } else {
+            allowance = schedule.getTimePerDay(schedule.dayOfWeek(startsAt));
+        }
+        return new Day(startsAt, startsAt + SECONDS_PER_DAY, allowance);
+    }
+
+    private static final class Day {
+        private final long startsAt;
+        private final long endsAt;
+        private final int allowance;
+
+        private Day(long startsAt, long endsAt, int allowance) {
+            this.startsAt = startsAt;
+            this.endsAt = endsAt;
+            this.allowance = allowance;
+        }
+    }
+}
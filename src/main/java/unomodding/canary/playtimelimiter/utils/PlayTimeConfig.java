@@ -0,0 +1,199 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+import net.canarymod.logger.Logman;
+import net.visualillusionsent.utils.PropertiesFile;
+
+/**
+ * Typed snapshot of the plugin's config, read once and never changed. The plugin keeps the current snapshot in a
+ * volatile field and swaps in a new one on reload, so readers always see a consistent set of values. The schedule,
+ * allowance and group quotas are compiled here too since they're built from the config.
+ */
+public final class PlayTimeConfig {
+    public final int timeStarted;
+    public final int initialTime;
+    public final int timePerDay;
+    public final int weekendTimePerDay;
+    public final boolean timeTravels;
+    public final String playWindows;
+    public final String curfew;
+    public final String groupQuotas;
+    public final Set<String> policyRefreshCommands;
+    public final boolean blacklist;
+    public final int secondsBetweenPlayTimeSaving;
+    public final boolean preloadPlayTime;
+    public final int preLoginWaitMillis;
+    public final boolean journal;
+    public final boolean journalSync;
+    public final int secondsBetweenJournalCheckpoints;
+    public final String storage;
+    public final boolean storageSync;
+    public final int storageCompactAfter;
+    public final int migrationBatchSize;
+    public final int nameCacheSize;
+    public final int maxCachedPlayers;
+    public final int shutdownFlushSeconds;
+    public final boolean afkMode;
+    public final int afkTimeoutSeconds;
+    public final int secondsBetweenAfkSweeps;
+    public final int writeQueueCapacity;
+    public final int logBufferSize;
+    public final int logFlushSize;
+    public final int secondsBetweenLogFlushes;
+
+    public final PlayTimeSchedule schedule;
+    public final DailyAllowance allowance;
+    public final QuotaPolicyResolver policies;
+
+    private PlayTimeConfig(Reader config, Logman logman) {
+        this.timeStarted = config.getInt("timeStarted", (int) (System.currentTimeMillis() / 1000));
+        this.initialTime = config.getInt("initialTime", 28800);
+        this.timePerDay = config.getInt("timePerDay", 3600);
+        this.secondsBetweenPlayTimeSaving = config.getInt("secondsBetweenPlayTimeSaving", 900);
+        this.timeTravels = config.getBoolean("timeTravels", true);
+        this.weekendTimePerDay = config.getInt("weekendTimePerDay", -1);
+        this.playWindows = config.getString("playWindows", "");
+        this.curfew = config.getString("curfew", "");
+        this.groupQuotas = config.getString("groupQuotas", "");
+        this.policyRefreshCommands = parseCommands(config.getString("policyRefreshCommands",
+                "groupmod,group,playermod,player"));
+        // timeCap (true) and timeCapValue (18000) aren't used yet
+        this.blacklist = config.getBoolean("blacklist", false);
+        this.preloadPlayTime = config.getBoolean("preloadPlayTime", false);
+        this.preLoginWaitMillis = config.getInt("preLoginWaitMillis", 0);
+        this.journal = config.getBoolean("journal", false);
+        this.journalSync = config.getBoolean("journalSync", false);
+        this.secondsBetweenJournalCheckpoints = config.getInt("secondsBetweenJournalCheckpoints", 60);
+        this.storage = config.getString("storage", "canary");
+        this.storageSync = config.getBoolean("storageSync", false);
+        this.storageCompactAfter = config.getInt("storageCompactAfter", 10000);
+        this.migrationBatchSize = config.getInt("migrationBatchSize", 1000);
+        this.nameCacheSize = config.getInt("nameCacheSize", 2000);
+        this.maxCachedPlayers = config.getInt("maxCachedPlayers", 5000);
+        this.shutdownFlushSeconds = config.getInt("shutdownFlushSeconds", 30);
+        this.afkMode = config.getBoolean("afkMode", false);
+        this.afkTimeoutSeconds = config.getInt("afkTimeoutSeconds", 300);
+        this.secondsBetweenAfkSweeps = config.getInt("secondsBetweenAfkSweeps", 10);
+        this.writeQueueCapacity = config.getInt("writeQueueCapacity", 10000);
+        this.logBufferSize = config.getInt("logBufferSize", 1024);
+        this.logFlushSize = config.getInt("logFlushSize", 64);
+        this.secondsBetweenLogFlushes = config.getInt("secondsBetweenLogFlushes", 5);
+
+        PlayTimeSchedule compiled;
+        try {
+            compiled = PlayTimeSchedule.compile(timePerDay, weekendTimePerDay, playWindows, curfew,
+                    TimeZone.getDefault());
+        } catch (IllegalArgumentException e) {
+            logman.warn("Invalid playWindows or curfew, allowing play at any time: " + e.getMessage());
+            compiled = PlayTimeSchedule.compile(timePerDay, weekendTimePerDay, "", "", TimeZone.getDefault());
+        }
+        this.schedule = compiled;
+        this.allowance = new DailyAllowance(timeStarted, initialTime, compiled, timeTravels);
+
+        QuotaPolicy defaultPolicy = new QuotaPolicy("default", this.allowance);
+        QuotaPolicyResolver resolver;
+        try {
+            resolver = QuotaPolicyResolver.compile(groupQuotas, defaultPolicy, timeStarted, compiled, timeTravels);
+        } catch (IllegalArgumentException e) {
+            logman.warn("Invalid groupQuotas, everyone gets the default time: " + e.getMessage());
+            resolver = QuotaPolicyResolver.compile("", defaultPolicy, timeStarted, compiled, timeTravels);
+        }
+        this.policies = resolver;
+    }
+
+    /**
+     * Reads the config, writing defaults for any missing keys and saving once if there were any.
+     */
+    public static PlayTimeConfig load(PropertiesFile config, Logman logman) {
+        Reader reader = new Reader(config);
+        PlayTimeConfig loaded = new PlayTimeConfig(reader, logman);
+        if (reader.changed) {
+            config.save();
+        }
+        return loaded;
+    }
+
+    /**
+     * Lists the settings that differ in {@code other} but are only read at startup.
+     */
+    public List<String> getRestartRequired(PlayTimeConfig other) {
+        List<String> changed = new ArrayList<String>();
+        if (!storage.equals(other.storage) || storageSync != other.storageSync
+                || storageCompactAfter != other.storageCompactAfter) {
+            changed.add("storage");
+        }
+        if (journal != other.journal || journalSync != other.journalSync) {
+            changed.add("journal");
+        }
+        if (afkMode != other.afkMode) {
+            changed.add("afkMode");
+        }
+        if (writeQueueCapacity != other.writeQueueCapacity) {
+            changed.add("writeQueueCapacity");
+        }
+        if (logBufferSize != other.logBufferSize || logFlushSize != other.logFlushSize
+                || secondsBetweenLogFlushes != other.secondsBetweenLogFlushes) {
+            changed.add("logging");
+        }
+        if (nameCacheSize != other.nameCacheSize) {
+            changed.add("nameCacheSize");
+        }
+        return changed;
+    }
+
+    private static Set<String> parseCommands(String commands) {
+        Set<String> parsed = new HashSet<String>();
+        for (String command : commands.split(",")) {
+            if (command.trim().length() > 0) {
+                parsed.add(command.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return Collections.unmodifiableSet(parsed);
+    }
+
+    private static final class Reader {
+        private final PropertiesFile config;
+        private boolean changed = false;
+
+        private Reader(PropertiesFile config) {
+            this.config = config;
+        }
+
+        private int getInt(String key, int defaultValue) {
+            if (!config.containsKey(key)) {
+                config.setInt(key, defaultValue);
+                changed = true;
+            }
+            return config.getInt(key);
+        }
+
+        private boolean getBoolean(String key, boolean defaultValue) {
+            if (!config.containsKey(key)) {
+                config.setBoolean(key, defaultValue);
+                changed = true;
+            }
+            return config.getBoolean(key);
+        }
+
+        private String getString(String key, String defaultValue) {
+            if (!config.containsKey(key)) {
+                config.setString(key, defaultValue);
+                changed = true;
+            }
+            return config.getString(key);
+        }
+    }
+}
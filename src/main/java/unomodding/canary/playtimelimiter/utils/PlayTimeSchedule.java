@@ -0,0 +1,290 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Weekly rules for when and how much players may play, compiled once from the config. The daily time can differ
+ * between weekdays and weekends, and play can be limited to windows such as {@code Mon-Fri 16:00-21:00} with
+ * curfews such as {@code 22:00-07:00} taken out of them. The allowed times are kept as a sorted table of
+ * intervals over the week in server local time, so every lookup is a binary search.
+ */
+public final class PlayTimeSchedule {
+    public static final int SECONDS_PER_WEEK = 7 * DailyAllowance.SECONDS_PER_DAY;
+
+    private static final String[] DAYS = { "mon", "tue", "wed", "thu", "fri", "sat", "sun" };
+    private static final int MINUTES_PER_DAY = 1440;
+    // The epoch fell on a Thursday
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    private final TimeZone timeZone;
+    private final int[] dayTimes;
+    private final long weekTime;
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean always;
+
+    private PlayTimeSchedule(TimeZone timeZone, int[] dayTimes, int[] starts, int[] ends) {
+        this.timeZone = timeZone;
+        this.dayTimes = dayTimes;
+        long total = 0;
+        for (int time : dayTimes) {
+            total += time;
+        }
+        this.weekTime = total;
+        this.starts = starts;
+        this.ends = ends;
+        this.always = starts.length == 1 && starts[0] == 0 && ends[0] == SECONDS_PER_WEEK;
+    }
+
+    /**
+     * A schedule with the same time every day and no limits on when to play.
+     */
+    public static PlayTimeSchedule daily(int timePerDay) {
+        return compile(timePerDay, -1, "", "", TimeZone.getDefault());
+    }
+
+    /**
+     * Builds a schedule from the config values.
+     *
+     * @param timePerDay
+     *            time given on weekdays, and on weekends unless {@code weekendTimePerDay} is set
+     * @param weekendTimePerDay
+     *            time given on Saturdays and Sundays, or -1 to use {@code timePerDay}
+     * @param playWindows
+     *            comma separated windows when play is allowed, or empty to allow any time
+     * @param curfew
+     *            comma separated windows when play isn't allowed, or empty for none
+     * @throws IllegalArgumentException
+     *             if a window can't be parsed or no time is left to play in the week
+     */
+    public static PlayTimeSchedule compile(int timePerDay, int weekendTimePerDay, String playWindows, String curfew,
+            TimeZone timeZone) {
+        // Work at minute resolution while compiling, it's the finest the config can express
+        boolean[] allowed = new boolean[7 * MINUTES_PER_DAY];
+        boolean anyWindows = playWindows != null && playWindows.trim().length() > 0;
+        if (anyWindows) {
+            mark(allowed, playWindows, true);
+        } else {
+            fill(allowed, 0, allowed.length, true);
+        }
+        if (curfew != null && curfew.trim().length() > 0) {
+            mark(allowed, curfew, false);
+        }
+
+        List<int[]> intervals = new ArrayList<int[]>();
+        int minute = 0;
+        while (minute < allowed.length) {
+            if (!allowed[minute]) {
+                minute++;
+                continue;
+            }
+            int start = minute;
+            while (minute < allowed.length && allowed[minute]) {
+                minute++;
+            }
+            intervals.add(new int[] { start * 60, minute * 60 });
+        }
+        if (intervals.isEmpty()) {
+            throw new IllegalArgumentException("The play windows and curfew leave no time to play");
+        }
+        int[] starts = new int[intervals.size()];
+        int[] ends = new int[intervals.size()];
+        for (int i = 0; i < intervals.size(); i++) {
+            starts[i] = intervals.get(i)[0];
+            ends[i] = intervals.get(i)[1];
+        }
+        return new PlayTimeSchedule(timeZone, dayTimes(timePerDay, weekendTimePerDay), starts, ends);
+    }
+
+    /**
+     * Gets a copy of this schedule with different daily times, keeping the same play windows.
+     */
+    public PlayTimeSchedule withTimes(int timePerDay, int weekendTimePerDay) {
+        return new PlayTimeSchedule(timeZone, dayTimes(timePerDay, weekendTimePerDay), starts, ends);
+    }
+
+    /**
+     * Gets the day of the week in server local time, 0 being Monday.
+     */
+    public int dayOfWeek(long now) {
+        return secondOfWeek(now) / DailyAllowance.SECONDS_PER_DAY;
+    }
+
+    public int getTimePerDay(int dayOfWeek) {
+        return dayTimes[dayOfWeek];
+    }
+
+    /**
+     * Gets the total time given over {@code days} days in a row starting on {@code firstDayOfWeek}.
+     */
+    public long getTimeForDays(int firstDayOfWeek, long days) {
+        long total = (days / 7) * weekTime;
+        for (int i = 0; i < days % 7; i++) {
+            total += dayTimes[(firstDayOfWeek + i) % 7];
+        }
+        return total;
+    }
+
+    public boolean isAllowed(long now) {
+        if (always) {
+            return true;
+        }
+        int second = secondOfWeek(now);
+        int index = find(second);
+        return index >= 0 && second < ends[index];
+    }
+
+    /**
+     * Gets how long until the current play window closes, 0 if play isn't allowed now or
+     * {@link Integer#MAX_VALUE} if it never closes.
+     */
+    public int secondsUntilClosed(long now) {
+        if (always) {
+            return Integer.MAX_VALUE;
+        }
+        int second = secondOfWeek(now);
+        int index = find(second);
+        if (index < 0 || second >= ends[index]) {
+            return 0;
+        }
+        int end = ends[index];
+        if (end == SECONDS_PER_WEEK && starts[0] == 0) {
+            // Runs on past midnight on Sunday into the window at the start of the week
+            end += ends[0];
+        }
+        return end - second;
+    }
+
+    /**
+     * Gets how long until play is next allowed, 0 if it's allowed now.
+     */
+    public int secondsUntilAllowed(long now) {
+        if (always) {
+            return 0;
+        }
+        int second = secondOfWeek(now);
+        int index = find(second);
+        if (index >= 0 && second < ends[index]) {
+            return 0;
+        }
+        if (index + 1 < starts.length) {
+            return starts[index + 1] - second;
+        }
+        return SECONDS_PER_WEEK - second + starts[0];
+    }
+
+    /**
+     * Finds the last interval starting at or before the given second of the week, or -1 if there isn't one.
+     */
+    private int find(int second) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= second) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private int secondOfWeek(long now) {
+        // Around a daylight saving change this can be out by the size of the shift until the next lookup
+        long local = now + timeZone.getOffset(now * 1000L) / 1000 + (long) EPOCH_DAY_OF_WEEK
+                * DailyAllowance.SECONDS_PER_DAY;
+        return (int) (((local % SECONDS_PER_WEEK) + SECONDS_PER_WEEK) % SECONDS_PER_WEEK);
+    }
+
+    private static void mark(boolean[] minutes, String windows, boolean value) {
+        for (String window : windows.split(",")) {
+            window = window.trim().toLowerCase(Locale.ENGLISH);
+            if (window.length() == 0) {
+                continue;
+            }
+            int firstDay = 0;
+            int lastDay = 6;
+            String times = window;
+            int space = window.indexOf(' ');
+            if (space > 0) {
+                String days = window.substring(0, space);
+                times = window.substring(space + 1).trim();
+                int dash = days.indexOf('-');
+                firstDay = parseDay(dash > 0 ? days.substring(0, dash) : days, window);
+                lastDay = dash > 0 ? parseDay(days.substring(dash + 1), window) : firstDay;
+            }
+            int dash = times.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("Expected a time range like 16:00-21:00 in '" + window + "'");
+            }
+            int from = parseTime(times.substring(0, dash), window);
+            int to = parseTime(times.substring(dash + 1), window);
+            if (to <= from) {
+                // Runs on past midnight into the next day
+                to += MINUTES_PER_DAY;
+            }
+            int day = firstDay;
+            while (true) {
+                int start = day * MINUTES_PER_DAY + from;
+                int end = day * MINUTES_PER_DAY + to;
+                fill(minutes, start, Math.min(end, minutes.length), value);
+                if (end > minutes.length) {
+                    // Wrap past the end of Sunday into Monday
+                    fill(minutes, 0, end - minutes.length, value);
+                }
+                if (day == lastDay) {
+                    break;
+                }
+                day = (day + 1) % 7;
+            }
+        }
+    }
+
+    private static int[] dayTimes(int timePerDay, int weekendTimePerDay) {
+        int[] times = new int[7];
+        for (int day = 0; day < 7; day++) {
+            times[day] = day >= 5 && weekendTimePerDay >= 0 ? weekendTimePerDay : timePerDay;
+        }
+        return times;
+    }
+
+    private static void fill(boolean[] minutes, int from, int to, boolean value) {
+        for (int i = from; i < to; i++) {
+            minutes[i] = value;
+        }
+    }
+
+    private static int parseDay(String day, String window) {
+        for (int i = 0; i < DAYS.length; i++) {
+            if (day.startsWith(DAYS[i])) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day '" + day + "' in '" + window + "'");
+    }
+
+    private static int parseTime(String time, String window) {
+        String[] parts = time.trim().split(":");
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            if (parts.length > 2 || hours < 0 || minutes < 0 || minutes >= 60
+                    || hours * 60 + minutes > MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Invalid time '" + time + "' in '" + window + "'");
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time '" + time + "' in '" + window + "'");
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import unomodding.canary.playtimelimiter.PlayTimeLimiter;
+
+/**
+ * In-process counters and timings for the plugin, shown by /playtime stats and registered as an MBean so they can
+ * be watched with any JMX client. Recording only touches atomics, so it's safe from any thread.
+ */
+public class PlayTimeStats implements PlayTimeStatsMBean {
+    public static final String OBJECT_NAME = "unomodding.canary.playtimelimiter:type=PlayTimeStats";
+
+    private final PlayTimeLimiter plugin;
+    private final LatencyHistogram checker = new LatencyHistogram();
+    private final LatencyHistogram save = new LatencyHistogram();
+    private final LatencyHistogram storeReads = new LatencyHistogram();
+    private final LatencyHistogram storeWrites = new LatencyHistogram();
+    private final AtomicLong storeReadErrors = new AtomicLong();
+    private final AtomicLong storeWriteErrors = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PlayTimeStats(PlayTimeLimiter plugin) {
+        this.plugin = plugin;
+    }
+
+    public void recordCheckerRun(long nanos) {
+        checker.record(nanos);
+    }
+
+    public void recordSave(long nanos) {
+        save.record(nanos);
+    }
+
+    public void recordStoreRead(long nanos, boolean failed) {
+        storeReads.record(nanos);
+        if (failed) {
+            storeReadErrors.incrementAndGet();
+        }
+    }
+
+    public void recordStoreWrite(long nanos, boolean failed) {
+        storeWrites.record(nanos);
+        if (failed) {
+            storeWriteErrors.incrementAndGet();
+        }
+    }
+
+    public void recordCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    public void recordEvictions(int evicted) {
+        evictions.addAndGet(evicted);
+    }
+
+    public int getCachedSessions() {
+        return plugin.getCachedSessionCount();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getActiveSessions() {
+        return plugin.getOnlineSessionCount();
+    }
+
+    public int getDirtySessions() {
+        return plugin.getDirtySessionCount();
+    }
+
+    public int getWriteQueueSize() {
+        return plugin.getWriteQueueSize();
+    }
+
+    public int getLogQueueSize() {
+        AuditLog auditLog = plugin.getAuditLog();
+        return auditLog == null ? 0 : auditLog.getQueueSize();
+    }
+
+    public long getCheckerRuns() {
+        return checker.getCount();
+    }
+
+    public long getCheckerMeanMicros() {
+        return checker.getMeanMicros();
+    }
+
+    public long getCheckerP99Micros() {
+        return checker.getPercentileMicros(99);
+    }
+
+    public long getCheckerMaxMicros() {
+        return checker.getMaxMicros();
+    }
+
+    public long getSaveRuns() {
+        return save.getCount();
+    }
+
+    public long getSaveMeanMicros() {
+        return save.getMeanMicros();
+    }
+
+    public long getSaveP99Micros() {
+        return save.getPercentileMicros(99);
+    }
+
+    public long getSaveMaxMicros() {
+        return save.getMaxMicros();
+    }
+
+    public long getStoreReads() {
+        return storeReads.getCount();
+    }
+
+    public long getStoreReadMeanMicros() {
+        return storeReads.getMeanMicros();
+    }
+
+    public long getStoreReadP99Micros() {
+        return storeReads.getPercentileMicros(99);
+    }
+
+    public long getStoreReadErrors() {
+        return storeReadErrors.get();
+    }
+
+    public long getStoreWrites() {
+        return storeWrites.getCount();
+    }
+
+    public long getStoreWriteMeanMicros() {
+        return storeWrites.getMeanMicros();
+    }
+
+    public long getStoreWriteP99Micros() {
+        return storeWrites.getPercentileMicros(99);
+    }
+
+    public long getStoreWriteErrors() {
+        return storeWriteErrors.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public double getCacheHitRate() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getNameCacheHits() {
+        return plugin.getNameCache().getHits();
+    }
+
+    public long getNameCacheMisses() {
+        return plugin.getNameCache().getMisses();
+    }
+
+    public int getNameCacheSize() {
+        return plugin.getNameCache().size();
+    }
+
+    public void reset() {
+        checker.reset();
+        save.reset();
+        storeReads.reset();
+        storeWrites.reset();
+        storeReadErrors.set(0);
+        storeWriteErrors.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        evictions.set(0);
+        plugin.getNameCache().resetCounters();
+    }
+}
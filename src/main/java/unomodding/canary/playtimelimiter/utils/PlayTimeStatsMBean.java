@@ -0,0 +1,70 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+/**
+ * What {@link PlayTimeStats} exposes over JMX. Times are in microseconds.
+ */
+public interface PlayTimeStatsMBean {
+    int getActiveSessions();
+
+    int getCachedSessions();
+
+    long getEvictions();
+
+    int getDirtySessions();
+
+    int getWriteQueueSize();
+
+    int getLogQueueSize();
+
+    long getCheckerRuns();
+
+    long getCheckerMeanMicros();
+
+    long getCheckerP99Micros();
+
+    long getCheckerMaxMicros();
+
+    long getSaveRuns();
+
+    long getSaveMeanMicros();
+
+    long getSaveP99Micros();
+
+    long getSaveMaxMicros();
+
+    long getStoreReads();
+
+    long getStoreReadMeanMicros();
+
+    long getStoreReadP99Micros();
+
+    long getStoreReadErrors();
+
+    long getStoreWrites();
+
+    long getStoreWriteMeanMicros();
+
+    long getStoreWriteP99Micros();
+
+    long getStoreWriteErrors();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    double getCacheHitRate();
+
+    long getNameCacheHits();
+
+    long getNameCacheMisses();
+
+    int getNameCacheSize();
+
+    void reset();
+}
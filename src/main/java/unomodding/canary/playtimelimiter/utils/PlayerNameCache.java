@@ -0,0 +1,158 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded least recently used cache of player names and UUIDs in both directions, so commands and log lines don't
+ * have to ask Canary (which can mean reading player files or asking Mojang). Names are matched ignoring case.
+ */
+public class PlayerNameCache {
+    private final Map<String, UUID> uuids;
+    private final Map<UUID, String> names;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PlayerNameCache(int capacity) {
+        this.uuids = new LruMap<String, UUID>(Math.max(1, capacity));
+        this.names = new LruMap<UUID, String>(Math.max(1, capacity));
+    }
+
+    public synchronized void put(UUID uuid, String name) {
+        if (uuid == null || name == null) {
+            return;
+        }
+        String old = names.put(uuid, name);
+        if (old != null && !old.equalsIgnoreCase(name)) {
+            // They've changed their name, the old one may belong to someone else now
+            uuids.remove(old.toLowerCase(Locale.ENGLISH));
+        }
+        uuids.put(name.toLowerCase(Locale.ENGLISH), uuid);
+    }
+
+    /**
+     * Gets the UUID for a name, or null if it isn't cached.
+     */
+    public synchronized UUID getUUID(String name) {
+        UUID uuid = uuids.get(name.toLowerCase(Locale.ENGLISH));
+        count(uuid != null);
+        return uuid;
+    }
+
+    /**
+     * Gets the name for a UUID, or null if it isn't cached.
+     */
+    public synchronized String getName(UUID uuid) {
+        String name = names.get(uuid);
+        count(name != null);
+        return name;
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Fills the cache from a file written by {@link #save(File)}.
+     */
+    public void load(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                try {
+                    put(UUID.fromString(line.substring(0, space)), line.substring(space + 1).trim());
+                } catch (IllegalArgumentException e) {
+                    // Skip lines we can't read
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes the cached players to a file, least recently used first so loading it keeps the same order.
+     */
+    public void save(File file) throws IOException {
+        List<Map.Entry<UUID, String>> entries;
+        synchronized (this) {
+            entries = new ArrayList<Map.Entry<UUID, String>>(names.entrySet());
+        }
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (Map.Entry<UUID, String> entry : entries) {
+                writer.write(entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = -3512869127395129427L;
+
+        private final int capacity;
+
+        private LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
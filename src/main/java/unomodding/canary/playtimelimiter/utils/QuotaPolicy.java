@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+/**
+ * How much time a group of players is given. Players with an unlimited policy aren't limited at all.
+ */
+public final class QuotaPolicy {
+    private final String name;
+    private final DailyAllowance allowance;
+
+    public QuotaPolicy(String name, DailyAllowance allowance) {
+        this.name = name;
+        this.allowance = allowance;
+    }
+
+    public static QuotaPolicy unlimited(String name) {
+        return new QuotaPolicy(name, null);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isUnlimited() {
+        return this.allowance == null;
+    }
+
+    /**
+     * Gets the total time given out by {@code now}, or {@link Integer#MAX_VALUE} if the policy is unlimited.
+     */
+    public int getTimeAllowed(long now) {
+        return this.allowance == null ? Integer.MAX_VALUE : this.allowance.getTimeAllowed(now);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.canarymod.api.entity.living.humanoid.Player;
+
+/**
+ * Picks the {@link QuotaPolicy} for a player from their groups. Policies are compiled from the groupQuotas config,
+ * a comma separated list of {@code group=initialTime/timePerDay[/weekendTimePerDay]} or {@code group=unlimited}.
+ * The first listed group a player is in (including through parent groups) wins, anyone else gets the default.
+ * Looking at groups isn't cheap, so this is only done at login and when groups change.
+ */
+public final class QuotaPolicyResolver {
+    private final QuotaPolicy defaultPolicy;
+    private final List<String> groups;
+    private final List<QuotaPolicy> policies;
+
+    private QuotaPolicyResolver(QuotaPolicy defaultPolicy, List<String> groups, List<QuotaPolicy> policies) {
+        this.defaultPolicy = defaultPolicy;
+        this.groups = groups;
+        this.policies = policies;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if an entry can't be parsed
+     */
+    public static QuotaPolicyResolver compile(String groupQuotas, QuotaPolicy defaultPolicy, long timeStarted,
+            PlayTimeSchedule schedule, boolean timeTravels) {
+        List<String> groups = new ArrayList<String>();
+        List<QuotaPolicy> policies = new ArrayList<QuotaPolicy>();
+        if (groupQuotas != null) {
+            for (String entry : groupQuotas.split(",")) {
+                entry = entry.trim();
+                if (entry.length() == 0) {
+                    continue;
+                }
+                int equals = entry.indexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException("Expected group=initialTime/timePerDay in '" + entry + "'");
+                }
+                String group = entry.substring(0, equals).trim();
+                String quota = entry.substring(equals + 1).trim();
+                groups.add(group);
+                if (quota.equalsIgnoreCase("unlimited")) {
+                    policies.add(QuotaPolicy.unlimited(group));
+                    continue;
+                }
+                String[] times = quota.split("/");
+                if (times.length < 2 || times.length > 3) {
+                    throw new IllegalArgumentException("Expected group=initialTime/timePerDay in '" + entry + "'");
+                }
+                try {
+                    int initialTime = Integer.parseInt(times[0].trim());
+                    int timePerDay = Integer.parseInt(times[1].trim());
+                    int weekendTimePerDay = times.length > 2 ? Integer.parseInt(times[2].trim()) : -1;
+                    policies.add(new QuotaPolicy(group, new DailyAllowance(timeStarted, initialTime,
+                            schedule.withTimes(timePerDay, weekendTimePerDay), timeTravels)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid time in '" + entry + "'");
+                }
+            }
+        }
+        return new QuotaPolicyResolver(defaultPolicy, Collections.unmodifiableList(groups),
+                Collections.unmodifiableList(policies));
+    }
+
+    public QuotaPolicy getDefault() {
+        return this.defaultPolicy;
+    }
+
+    /**
+     * Returns true if any groups have their own policy.
+     */
+    public boolean hasGroupPolicies() {
+        return !this.groups.isEmpty();
+    }
+
+    /**
+     * Gets a policy by name, or null if there isn't one.
+     */
+    public QuotaPolicy get(String name) {
+        if (this.defaultPolicy.getName().equals(name)) {
+            return this.defaultPolicy;
+        }
+        int index = this.groups.indexOf(name);
+        return index >= 0 ? this.policies.get(index) : null;
+    }
+
+    public QuotaPolicy resolve(Player player) {
+        for (int i = 0; i < this.groups.size(); i++) {
+            if (player.isInGroup(this.groups.get(i), true)) {
+                return this.policies.get(i);
+            }
+        }
+        return this.defaultPolicy;
+    }
+}
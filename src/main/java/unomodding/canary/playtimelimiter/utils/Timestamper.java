@@ -12,4 +12,8 @@ public final class Timestamper {
     public static String now() {
         return ToolBox.formatTimestamp(ToolBox.getUnixTimestamp());
     }
+
+    public static String format(long timestamp) {
+        return ToolBox.formatTimestamp(timestamp);
+    }
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Races logins, logouts and playtime changes through the plugin against its saves, with a small write queue so
+ * saves also wait on the writer, then checks that what reached the store matches what the plugin holds.
+ */
+public class PlayTimeLimiterStressTest {
+    private static final int PLAYERS = 40;
+    private static final int WORKERS = 8;
+    private static final int TRIALS = 50;
+    private static final int ROUNDS = 200;
+    private static final int START = 100000;
+
+    @Test
+    public void changesRacingSavesAreNotLost() throws Exception {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put("writeQueueCapacity", "4");
+        TestPlugin server = new TestPlugin(settings);
+        PlayTimeLimiter plugin = server.getPlugin();
+        try {
+            UUID[] uuids = new UUID[PLAYERS];
+            for (int i = 0; i < PLAYERS; i++) {
+                uuids[i] = UUID.randomUUID();
+                plugin.setPlayTime(uuids[i], START);
+            }
+            // The first half only have their time moved by known amounts, so their totals can be checked exactly.
+            // The rest also log in and out and have their time set, which depends on timing.
+            AtomicIntegerArray expected = new AtomicIntegerArray(PLAYERS);
+            // Only each player's last change can go missing, so stop and check often
+            for (int trial = 0; trial < TRIALS; trial++) {
+                race(server, uuids, expected, trial);
+
+                for (UUID uuid : uuids) {
+                    server.leave(uuid);
+                    plugin.setPlayerLoggedOut(server.offlinePlayer(uuid));
+                }
+                plugin.savePlayTime();
+                assertTrue(plugin.awaitWrites(10000));
+
+                for (int i = 0; i < PLAYERS; i++) {
+                    int playtime = plugin.getPlayerPlayTime(uuids[i]);
+                    if (i < PLAYERS / 2) {
+                        assertEquals(START + expected.get(i), playtime);
+                    }
+                    assertEquals(playtime, server.getStore().load(uuids[i]).getPlaytime());
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Runs the workers against a thread saving as fast as it can, until every worker has made its changes.
+     */
+    private static void race(final TestPlugin server, final UUID[] uuids, final AtomicIntegerArray expected,
+            int trial) throws Exception {
+        final PlayTimeLimiter plugin = server.getPlugin();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread[] workers = new Thread[WORKERS];
+        for (int w = 0; w < WORKERS; w++) {
+            final long seed = trial * WORKERS + w;
+            workers[w] = new Thread(new Runnable() {
+                public void run() {
+                    Random random = new Random(seed);
+                    await(start);
+                    try {
+                        for (int i = 0; i < ROUNDS; i++) {
+                            int player = random.nextInt(PLAYERS);
+                            change(server, uuids[player], random, player < PLAYERS / 2 ? expected : null, player);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        Thread saver = new Thread(new Runnable() {
+            public void run() {
+                await(start);
+                try {
+                    while (!done.get()) {
+                        plugin.savePlayTime();
+                        plugin.savePlayTimeAndCompact();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        });
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        saver.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        done.set(true);
+        saver.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    /**
+     * Makes one random change to a player. If {@code expected} is given only changes by a known amount are made,
+     * and they're added to it.
+     */
+    private static void change(TestPlugin server, UUID uuid, Random random, AtomicIntegerArray expected, int player)
+            throws Exception {
+        PlayTimeLimiter plugin = server.getPlugin();
+        int seconds = 1 + random.nextInt(5);
+        switch (random.nextInt(expected != null ? 2 : 5)) {
+        case 0:
+            plugin.addPlayTime(uuid, seconds);
+            if (expected != null) {
+                expected.addAndGet(player, -seconds);
+            }
+            break;
+        case 1:
+            plugin.removePlayTime(uuid, seconds);
+            if (expected != null) {
+                expected.addAndGet(player, seconds);
+            }
+            break;
+        case 2:
+            plugin.setPlayTime(uuid, START + seconds);
+            break;
+        case 3:
+            server.join(uuid);
+            plugin.setPlayerLoggedIn(server.offlinePlayer(uuid));
+            break;
+        default:
+            server.leave(uuid);
+            plugin.setPlayerLoggedOut(server.offlinePlayer(uuid));
+            break;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.canarymod.api.OfflinePlayer;
+import net.canarymod.api.Server;
+import net.canarymod.api.entity.living.humanoid.Player;
+import net.visualillusionsent.utils.PropertiesFile;
+import unomodding.canary.playtimelimiter.data.MemoryPlayTimeStore;
+import unomodding.canary.playtimelimiter.utils.PlayTimeConfig;
+
+/**
+ * A plugin for the tests and benchmarks, opened with the default config and an in-memory store against a stub server
+ * rather than a running Canary. The server and its players are proxies that only know their UUID and name, so nothing
+ * that needs the rest of Canary (hooks, commands, groups) can be used through them.
+ */
+public final class TestPlugin {
+    private final File folder;
+    private final PlayTimeLimiter plugin = new PlayTimeLimiter();
+    private final MemoryPlayTimeStore store = new MemoryPlayTimeStore();
+    private final Map<UUID, Player> online = new ConcurrentHashMap<UUID, Player>();
+
+    public TestPlugin() throws IOException {
+        this(new HashMap<String, String>());
+    }
+
+    /**
+     * Opens the plugin with the given config settings in place of the defaults.
+     */
+    public TestPlugin(Map<String, String> settings) throws IOException {
+        folder = File.createTempFile("playtime", "test");
+        folder.delete();
+        folder.mkdirs();
+        PropertiesFile config = new PropertiesFile(new File(folder, "PlayTimeLimiter.cfg").getPath());
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            config.setString(setting.getKey(), setting.getValue());
+        }
+        plugin.open(stub(Server.class, new ServerHandler()), PlayTimeConfig.load(config, plugin.getLogman()), store);
+    }
+
+    public PlayTimeLimiter getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Gets the store behind the plugin, for checking what was written.
+     */
+    public MemoryPlayTimeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets a stub player, which the server lists as online until {@link #leave(UUID)}.
+     */
+    public Player join(UUID uuid) {
+        Player player = stub(Player.class, new PlayerHandler(uuid));
+        online.put(uuid, player);
+        return player;
+    }
+
+    public void leave(UUID uuid) {
+        online.remove(uuid);
+    }
+
+    public OfflinePlayer offlinePlayer(UUID uuid) {
+        return stub(OfflinePlayer.class, new PlayerHandler(uuid));
+    }
+
+    public void close() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Gets what an unstubbed method returns, the zero value for primitives and null for everything else.
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0F;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        } else if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        }
+        return null;
+    }
+
+    private final class ServerHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("getPlayerFromUUID".equals(name)) {
+                return online.get(UUID.fromString((String) args[0]));
+            } else if ("getPlayerList".equals(name)) {
+                return new ArrayList<Player>(online.values());
+            } else if ("hashCode".equals(name) || "equals".equals(name)) {
+                return identity(proxy, method, args);
+            } else if ("toString".equals(name)) {
+                return "TestServer";
+            }
+            return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static final class PlayerHandler implements InvocationHandler {
+        private final UUID uuid;
+
+        private PlayerHandler(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("getUUID".equals(name)) {
+                return uuid;
+            } else if ("getUUIDString".equals(name)) {
+                return uuid.toString();
+            } else if ("getName".equals(name) || "toString".equals(name)) {
+                return "Player" + uuid.toString().substring(0, 8);
+            } else if ("hashCode".equals(name) || "equals".equals(name)) {
+                return identity(proxy, method, args);
+            }
+            return defaultValue(method.getReturnType());
+        }
+    }
+}
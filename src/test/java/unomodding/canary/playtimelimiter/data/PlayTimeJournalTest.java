@@ -0,0 +1,157 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlayTimeJournalTest {
+    private static final UUID ONLINE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SAVED = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("journal", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void replaysLatestRecordPerPlayer() throws IOException {
+        PlayTimeJournal journal = new PlayTimeJournal(folder, false);
+        journal.open();
+        journal.append(ONLINE, 10, false);
+        journal.append(ONLINE, 20, true);
+        journal.append(SAVED, 5, false);
+        journal.close();
+
+        Map<UUID, PlayTimeJournal.Entry> replayed = new PlayTimeJournal(folder, false).open();
+        assertEquals(2, replayed.size());
+        assertEquals(20, replayed.get(ONLINE).playtime);
+        assertTrue(replayed.get(ONLINE).blacklisted);
+        assertEquals(5, replayed.get(SAVED).playtime);
+    }
+
+    @Test
+    public void skipsCorruptRecordsAndDropsATornOne() throws IOException {
+        PlayTimeJournal journal = new PlayTimeJournal(folder, false);
+        journal.open();
+        journal.append(ONLINE, 10, false);
+        journal.append(SAVED, 5, false);
+        journal.append(ONLINE, 20, false);
+        journal.close();
+
+        // Flip a byte in the middle record's playtime and leave half a record on the end
+        RandomAccessFile file = new RandomAccessFile(new File(folder, "playtime.journal"), "rw");
+        long length;
+        try {
+            long recordSize = file.length() / 3;
+            length = file.length();
+            file.seek(recordSize + 17);
+            file.write(0x7f);
+            file.seek(file.length());
+            file.write(new byte[5]);
+        } finally {
+            file.close();
+        }
+
+        PlayTimeJournal reopened = new PlayTimeJournal(folder, false);
+        Map<UUID, PlayTimeJournal.Entry> replayed = reopened.open();
+        assertEquals(1, replayed.size());
+        assertEquals(20, replayed.get(ONLINE).playtime);
+        assertNull(replayed.get(SAVED));
+        assertEquals(1, reopened.getSkippedRecords());
+        reopened.close();
+        // Only the torn record was cut off
+        assertEquals(length, new File(folder, "playtime.journal").length());
+    }
+
+    @Test
+    public void leftoverCopyFromATrimIsUsedOnlyIfTheJournalIsGone() throws IOException {
+        PlayTimeJournal journal = new PlayTimeJournal(folder, false);
+        journal.open();
+        journal.append(SAVED, 5, false);
+        long mark = journal.mark();
+        journal.append(ONLINE, 30, false);
+        journal.discard(mark);
+        journal.close();
+
+        // A crash after deleting the journal but before the copy was renamed over it
+        File journalFile = new File(folder, "playtime.journal");
+        File tempFile = new File(folder, "playtime.journal.tmp");
+        assertTrue(journalFile.renameTo(tempFile));
+        Map<UUID, PlayTimeJournal.Entry> replayed = new PlayTimeJournal(folder, false).open();
+        assertEquals(30, replayed.get(ONLINE).playtime);
+        assertFalse(tempFile.exists());
+    }
+
+    @Test
+    public void compactKeepsRecordsAfterTheMark() throws IOException {
+        PlayTimeJournal journal = new PlayTimeJournal(folder, false);
+        journal.open();
+        journal.append(SAVED, 5, false);
+        long mark = journal.mark();
+        journal.append(ONLINE, 30, false);
+        journal.compact(mark);
+
+        Map<UUID, PlayTimeJournal.Entry> all = journal.readAll();
+        assertEquals(5, all.get(SAVED).playtime);
+        assertEquals(30, all.get(ONLINE).playtime);
+        journal.close();
+
+        // Only the tail is left in the journal itself, the rest is in the snapshot
+        Map<UUID, PlayTimeJournal.Entry> tail = new PlayTimeJournal(folder, false).open();
+        assertEquals(1, tail.size());
+        assertEquals(30, tail.get(ONLINE).playtime);
+    }
+
+    @Test
+    public void checkpointAfterSaveSurvivesCrash() throws IOException {
+        PlayTimeJournal journal = new PlayTimeJournal(folder, false);
+        journal.open();
+        journal.append(ONLINE, 100, false);
+        journal.append(SAVED, 50, false);
+
+        // Save: everything up to the mark is written to the store, online players are checkpointed again and then
+        // the saved records are dropped
+        long mark = journal.mark();
+        journal.append(ONLINE, 160, false);
+        journal.discard(mark);
+
+        // Crash without closing, the next start only has the journal to go on
+        Map<UUID, PlayTimeJournal.Entry> replayed = new PlayTimeJournal(folder, false).open();
+        assertEquals(160, replayed.get(ONLINE).playtime);
+        assertFalse(replayed.containsKey(SAVED));
+        assertFalse(new File(folder, "playtime.snapshot").exists());
+        journal.close();
+    }
+}
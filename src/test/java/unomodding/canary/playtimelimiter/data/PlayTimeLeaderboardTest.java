@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class PlayTimeLeaderboardTest {
+    @Test
+    public void topIsOrderedByPlaytime() {
+        PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+        UUID low = UUID.randomUUID();
+        UUID high = UUID.randomUUID();
+        UUID middle = UUID.randomUUID();
+        leaderboard.update(low, 10);
+        leaderboard.update(high, 30);
+        leaderboard.update(middle, 20);
+        List<PlayTimeLeaderboard.Entry> top = leaderboard.top(2);
+        assertEquals(2, top.size());
+        assertEquals(high, top.get(0).uuid);
+        assertEquals(middle, top.get(1).uuid);
+        assertEquals(3, leaderboard.top(10).size());
+    }
+
+    @Test
+    public void updatesMovePlayers() {
+        PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        leaderboard.update(first, 10);
+        leaderboard.update(second, 20);
+        leaderboard.update(first, 30);
+        assertEquals(first, leaderboard.top(1).get(0).uuid);
+        assertEquals(2, leaderboard.size());
+        assertEquals(1, leaderboard.countAbove(20));
+        assertEquals(Integer.valueOf(30), leaderboard.get(first));
+    }
+
+    @Test
+    public void seedDoesNotOverwrite() {
+        PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+        UUID uuid = UUID.randomUUID();
+        leaderboard.update(uuid, 50);
+        leaderboard.seed(uuid, 10);
+        assertEquals(Integer.valueOf(50), leaderboard.get(uuid));
+        assertEquals(1, leaderboard.size());
+    }
+
+    @Test
+    public void removeTakesPlayersOffTheBoard() {
+        PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+        UUID uuid = UUID.randomUUID();
+        leaderboard.update(uuid, 50);
+        leaderboard.remove(uuid);
+        leaderboard.remove(uuid);
+        assertNull(leaderboard.get(uuid));
+        assertEquals(0, leaderboard.size());
+        assertEquals(0, leaderboard.top(5).size());
+    }
+
+    @Test
+    public void matchesASortedListUnderRandomChanges() {
+        PlayTimeLeaderboard leaderboard = new PlayTimeLeaderboard();
+        Map<UUID, Integer> expected = new HashMap<UUID, Integer>();
+        List<UUID> players = new ArrayList<UUID>();
+        for (int i = 0; i < 200; i++) {
+            players.add(UUID.randomUUID());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            UUID uuid = players.get(random.nextInt(players.size()));
+            if (random.nextInt(10) == 0) {
+                leaderboard.remove(uuid);
+                expected.remove(uuid);
+            } else {
+                // Keep the range small so there are plenty of ties
+                int playtime = random.nextInt(50);
+                leaderboard.update(uuid, playtime);
+                expected.put(uuid, playtime);
+            }
+        }
+        List<PlayTimeLeaderboard.Entry> sorted = new ArrayList<PlayTimeLeaderboard.Entry>();
+        for (Map.Entry<UUID, Integer> entry : expected.entrySet()) {
+            sorted.add(new PlayTimeLeaderboard.Entry(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(sorted);
+
+        List<PlayTimeLeaderboard.Entry> top = leaderboard.top(sorted.size() + 1);
+        assertEquals(sorted.size(), top.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i).uuid, top.get(i).uuid);
+            assertEquals(sorted.get(i).playtime, top.get(i).playtime);
+        }
+        for (int playtime = -1; playtime <= 50; playtime++) {
+            int above = 0;
+            for (int value : expected.values()) {
+                if (value > playtime) {
+                    above++;
+                }
+            }
+            assertEquals(above, leaderboard.countAbove(playtime));
+        }
+    }
+}
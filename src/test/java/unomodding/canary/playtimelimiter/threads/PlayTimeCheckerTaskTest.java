@@ -0,0 +1,48 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.threads;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import unomodding.canary.playtimelimiter.utils.PlayTimeStats;
+
+public class PlayTimeCheckerTaskTest {
+    @Test
+    public void reschedulingKeepsOneDeadlinePerPlayer() {
+        PlayTimeCheckerTask checker = new PlayTimeCheckerTask(null, new PlayTimeStats(null));
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        for (int i = 0; i < 1000; i++) {
+            checker.schedule(first, 3600 - i);
+            checker.schedule(second, 30);
+        }
+        assertEquals(2, checker.size());
+    }
+
+    @Test
+    public void cancelDropsTheDeadline() {
+        PlayTimeCheckerTask checker = new PlayTimeCheckerTask(null, new PlayTimeStats(null));
+        UUID uuid = UUID.randomUUID();
+        checker.schedule(uuid, 3600);
+        checker.cancel(uuid);
+        checker.cancel(uuid);
+        assertEquals(0, checker.size());
+    }
+
+    @Test
+    public void playersDueAtTheSameTimeAreBothQueued() {
+        PlayTimeCheckerTask checker = new PlayTimeCheckerTask(null, new PlayTimeStats(null));
+        for (int i = 0; i < 100; i++) {
+            checker.schedule(UUID.randomUUID(), 3600);
+        }
+        assertEquals(100, checker.size());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.canarymod.logger.Logman;
+
+import org.junit.Test;
+
+import unomodding.canary.playtimelimiter.data.MemoryPlayTimeStore;
+import unomodding.canary.playtimelimiter.data.PlayTimeRecord;
+import unomodding.canary.playtimelimiter.data.PlayTimeStore;
+import unomodding.canary.playtimelimiter.exceptions.PlayTimeStoreException;
+
+public class PlayTimeWriterTest {
+    @Test
+    public void batchFailingDuringShutdownIsRetriedByTheDrain() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final MemoryPlayTimeStore store = new MemoryPlayTimeStore();
+        PlayTimeStore failing = new PlayTimeStore() {
+            public void open() {
+            }
+
+            public PlayTimeRecord load(UUID uuid) {
+                return store.load(uuid);
+            }
+
+            public Map<UUID, PlayTimeRecord> loadAll(Collection<UUID> uuids) {
+                return store.loadAll(uuids);
+            }
+
+            public Map<UUID, PlayTimeRecord> loadAll() {
+                return store.loadAll();
+            }
+
+            public void saveAll(Collection<PlayTimeRecord> records) throws PlayTimeStoreException {
+                if (calls.incrementAndGet() == 1) {
+                    // Fail the worker's batch once shutdown has started
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new PlayTimeStoreException("Store went away", null);
+                }
+                store.saveAll(records);
+            }
+
+            public void close() {
+            }
+        };
+        final PlayTimeWriter writer = new PlayTimeWriter(new Logman(), failing, 10);
+        writer.start();
+        UUID uuid = UUID.randomUUID();
+        writer.queue(new PlayTimeRecord(uuid, 42, false));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        final int[] left = { -1 };
+        Thread stopping = new Thread(new Runnable() {
+            public void run() {
+                left[0] = writer.shutdown(5000);
+            }
+        });
+        stopping.start();
+        // Give shutdown time to stop the worker before its write fails
+        Thread.sleep(200);
+        release.countDown();
+        stopping.join();
+
+        assertEquals(0, left[0]);
+        assertNotNull(store.load(uuid));
+        assertEquals(42, store.load(uuid).getPlaytime());
+    }
+}
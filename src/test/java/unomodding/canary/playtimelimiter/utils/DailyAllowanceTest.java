@@ -0,0 +1,61 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DailyAllowanceTest {
+    private static final int DAY = DailyAllowance.SECONDS_PER_DAY;
+    // The epoch fell on a Thursday, so this is the start of the following Monday
+    private static final long MONDAY = 4 * DAY;
+
+    @Test
+    public void onlyTheInitialTimeBeforeStarting() {
+        DailyAllowance allowance = new DailyAllowance(MONDAY, 100, 10, true);
+        assertEquals(100, allowance.getTimeAllowed(MONDAY - 1));
+        assertEquals(1, allowance.secondsUntilNextDay(MONDAY - 1));
+    }
+
+    @Test
+    public void timeTravelsAddsUpEachDay() {
+        DailyAllowance allowance = new DailyAllowance(MONDAY, 100, 10, true);
+        assertEquals(110, allowance.getTimeAllowed(MONDAY));
+        assertEquals(110, allowance.getTimeAllowed(MONDAY + DAY - 1));
+        assertEquals(120, allowance.getTimeAllowed(MONDAY + DAY));
+        assertEquals(100 + 10 * 10, allowance.getTimeAllowed(MONDAY + 9 * DAY + 5));
+        assertEquals(DAY - 5, allowance.secondsUntilNextDay(MONDAY + 9 * DAY + 5));
+    }
+
+    @Test
+    public void withoutTimeTravelEachDayStandsAlone() {
+        DailyAllowance allowance = new DailyAllowance(MONDAY, 100, 10, false);
+        assertEquals(10, allowance.getTimeAllowed(MONDAY));
+        assertEquals(10, allowance.getTimeAllowed(MONDAY + 30 * DAY));
+    }
+
+    @Test
+    public void usesTheScheduleForEachDay() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(10, 20, "", "", TimeZone.getTimeZone("UTC"));
+        DailyAllowance daily = new DailyAllowance(MONDAY, 0, schedule, false);
+        assertEquals(10, daily.getTimeAllowed(MONDAY + 4 * DAY));
+        assertEquals(20, daily.getTimeAllowed(MONDAY + 5 * DAY));
+        DailyAllowance travelling = new DailyAllowance(MONDAY, 0, schedule, true);
+        // Five weekdays then Saturday
+        assertEquals(5 * 10 + 20, travelling.getTimeAllowed(MONDAY + 5 * DAY));
+    }
+
+    @Test
+    public void goingBackInTimeRecomputesTheDay() {
+        DailyAllowance allowance = new DailyAllowance(MONDAY, 100, 10, true);
+        assertEquals(150, allowance.getTimeAllowed(MONDAY + 4 * DAY));
+        assertEquals(110, allowance.getTimeAllowed(MONDAY));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2014 by UnoModding, RyanTheAlmighty and Contributors
+ *
+ * This work is licensed under the Creative Commons Attribution-ShareAlike 3.0 Unported License.
+ * To view a copy of this license, visit http://creativecommons.org/licenses/by-sa/3.0/.
+ */
+package unomodding.canary.playtimelimiter.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class PlayTimeScheduleTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final int HOUR = 3600;
+    private static final int DAY = DailyAllowance.SECONDS_PER_DAY;
+    // The epoch fell on a Thursday, so this is the start of the following Monday
+    private static final long MONDAY = 4 * DAY;
+
+    @Test
+    public void noWindowsAllowsAnyTime() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, -1, "", "", UTC);
+        assertTrue(schedule.isAllowed(MONDAY + 3 * HOUR));
+        assertEquals(Integer.MAX_VALUE, schedule.secondsUntilClosed(MONDAY));
+        assertEquals(0, schedule.secondsUntilAllowed(MONDAY));
+    }
+
+    @Test
+    public void playWindowsLimitWhenPlayIsAllowed() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, -1, "Mon-Fri 16:00-21:00", "", UTC);
+        assertFalse(schedule.isAllowed(MONDAY + 15 * HOUR));
+        assertTrue(schedule.isAllowed(MONDAY + 16 * HOUR));
+        assertFalse(schedule.isAllowed(MONDAY + 21 * HOUR));
+        assertEquals(HOUR, schedule.secondsUntilAllowed(MONDAY + 15 * HOUR));
+        assertEquals(5 * HOUR, schedule.secondsUntilClosed(MONDAY + 16 * HOUR));
+        assertEquals(0, schedule.secondsUntilClosed(MONDAY + 22 * HOUR));
+        // Nothing at the weekend, so Friday night waits until Monday afternoon
+        assertFalse(schedule.isAllowed(MONDAY + 5 * DAY + 17 * HOUR));
+        assertEquals(2 * DAY + 19 * HOUR, schedule.secondsUntilAllowed(MONDAY + 4 * DAY + 21 * HOUR));
+    }
+
+    @Test
+    public void curfewRunsPastMidnight() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, -1, "", "22:00-07:00", UTC);
+        assertTrue(schedule.isAllowed(MONDAY + 21 * HOUR));
+        assertFalse(schedule.isAllowed(MONDAY + 23 * HOUR));
+        assertFalse(schedule.isAllowed(MONDAY + DAY + 6 * HOUR));
+        assertTrue(schedule.isAllowed(MONDAY + DAY + 7 * HOUR));
+        assertEquals(HOUR, schedule.secondsUntilClosed(MONDAY + 21 * HOUR));
+        assertEquals(8 * HOUR, schedule.secondsUntilAllowed(MONDAY + 23 * HOUR));
+    }
+
+    @Test
+    public void windowWrapsFromSundayIntoMonday() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, -1, "Sun 22:00-02:00", "", UTC);
+        long sunday = MONDAY + 6 * DAY;
+        assertTrue(schedule.isAllowed(sunday + 23 * HOUR));
+        assertTrue(schedule.isAllowed(MONDAY + HOUR));
+        assertFalse(schedule.isAllowed(MONDAY + 2 * HOUR));
+        assertEquals(3 * HOUR, schedule.secondsUntilClosed(sunday + 23 * HOUR));
+        assertEquals(6 * DAY + 20 * HOUR, schedule.secondsUntilAllowed(MONDAY + 2 * HOUR));
+    }
+
+    @Test
+    public void weekendsCanHaveTheirOwnTime() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, 7200, "", "", UTC);
+        assertEquals(0, schedule.dayOfWeek(MONDAY));
+        assertEquals(3, schedule.dayOfWeek(0));
+        assertEquals(3600, schedule.getTimePerDay(4));
+        assertEquals(7200, schedule.getTimePerDay(5));
+        assertEquals(7200, schedule.getTimePerDay(6));
+        // A full week plus Monday and Tuesday
+        assertEquals(5 * 3600 + 2 * 7200 + 2 * 3600, schedule.getTimeForDays(0, 9));
+        // Friday, Saturday and Sunday
+        assertEquals(3600 + 2 * 7200, schedule.getTimeForDays(4, 3));
+    }
+
+    @Test
+    public void withTimesKeepsTheWindows() {
+        PlayTimeSchedule schedule = PlayTimeSchedule.compile(3600, -1, "Mon-Fri 16:00-21:00", "", UTC)
+                .withTimes(60, 120);
+        assertEquals(60, schedule.getTimePerDay(0));
+        assertEquals(120, schedule.getTimePerDay(6));
+        assertFalse(schedule.isAllowed(MONDAY + 15 * HOUR));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDays() {
+        PlayTimeSchedule.compile(3600, -1, "Someday 16:00-21:00", "", UTC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidTimes() {
+        PlayTimeSchedule.compile(3600, -1, "Mon 16:60-21:00", "", UTC);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSchedulesWithNoTimeToPlay() {
+        PlayTimeSchedule.compile(3600, -1, "Mon 16:00-21:00", "00:00-24:00", UTC);
+    }
+}